@@ -0,0 +1,43 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.Maze;
+import tws.keeper.solution.KeeperAI;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A complete episode: maze generation and KeeperAI steps until the maze is completed
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EpisodeBenchmark {
+
+    @Param({"40", "100"})
+    public int size;
+
+    @Param({"7", "16"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean castToMazeAllowed;
+
+    private long seed = 0;
+
+    @Benchmark
+    public int episode() {
+        Maze maze = Mazes.builder(size, keys, seed++).build(new KeeperAI(size, size, castToMazeAllowed));
+        int maxSteps = 20 * size * size;
+        int steps = 0;
+        while (!maze.isMazeCompleted() && steps < maxSteps) {
+            maze.makeKeeperAct();
+            steps++;
+        }
+        return steps;
+    }
+
+}
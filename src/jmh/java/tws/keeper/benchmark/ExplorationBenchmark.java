@@ -0,0 +1,71 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.*;
+import tws.keeper.solution.MazeExplorer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of MazeExplorer.explore, observing the adjacent cells like KeeperAI does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExplorationBenchmark {
+
+    @Param({"40", "200", "1000"})
+    public int size;
+
+    @Param({"7"})
+    public int keys;
+
+    private long seed = 0;
+    private Maze maze;
+    private ExploringKeeper keeper;
+
+    @Setup(Level.Iteration)
+    public void newMaze() {
+        keeper = new ExploringKeeper(new MazeExplorer(size, size));
+        maze = Mazes.builder(size, keys, seed++).build(keeper);
+    }
+
+    @Benchmark
+    public Action step() {
+        maze.makeKeeperAct();
+        if (keeper.lastAction == Action.DO_NOTHING) newMaze(); // maze fully explored
+        return keeper.lastAction;
+    }
+
+    /**
+     * Keeper that only explores
+     */
+    private static class ExploringKeeper implements Keeper {
+
+        private final MazeExplorer map;
+        private Action lastAction;
+
+        ExploringKeeper(MazeExplorer map) {
+            this.map = map;
+        }
+
+        @Override
+        public Action act(Observable maze) {
+            Position pos = maze.getKeeperPosition();
+            if (map.needObservation(pos)) {
+                int v = pos.getVertical();
+                int h = pos.getHorizontal();
+                if (maze.lookUp() == Cell.WALL) map.markWall(new Position(v - 1, h));
+                if (maze.lookDown() == Cell.WALL) map.markWall(new Position(v + 1, h));
+                if (maze.lookLeft() == Cell.WALL) map.markWall(new Position(v, h - 1));
+                if (maze.lookRight() == Cell.WALL) map.markWall(new Position(v, h + 1));
+            }
+            lastAction = map.explore(pos);
+            return lastAction;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.Action;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.IDA_Star;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IDA_Star.solve between random free cells of a fully known maze, like
+ * PathFindingBenchmark but only in mazes of at most IDA_Star.MAX_CELLS cells
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IdaStarBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"40", "200"})
+    public int size;
+
+    @Param({"7"})
+    public int keys;
+
+    private IDA_Star pathFinder;
+    private Position[] starts = new Position[PAIRS];
+    private Position[] targets = new Position[PAIRS];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Maze maze = Mazes.builder(size, keys, 1).build(Mazes.IDLE_KEEPER);
+        pathFinder = new IDA_Star(Mazes.knownMap(maze));
+        List<Position> cells = Mazes.freeCells(maze);
+        Random random = new Random(1);
+        for (int i = 0; i < PAIRS; i++) {
+            starts[i] = cells.get(random.nextInt(cells.size()));
+            targets[i] = cells.get(random.nextInt(cells.size()));
+        }
+    }
+
+    @Benchmark
+    public List<Action> solve() {
+        int pair = next++ & (PAIRS - 1);
+        try {
+            return pathFinder.solve(starts[pair], targets[pair]);
+        } catch (UnsolvableProblemException upe) {
+            return new ArrayList<>(); // isolated extra cells
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.Maze;
+import tws.keeper.solution.KeeperAI;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of KeeperAI.act through Maze.makeKeeperAct, a new seeded maze when one is completed
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KeeperStepBenchmark {
+
+    @Param({"40", "200"})
+    public int size;
+
+    @Param({"7", "16"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean castToMazeAllowed;
+
+    private long seed = 0;
+    private Maze maze;
+
+    @Setup(Level.Iteration)
+    public void newMaze() {
+        maze = Mazes.builder(size, keys, seed++).build(new KeeperAI(size, size, castToMazeAllowed));
+    }
+
+    @Benchmark
+    public Maze step() {
+        if (maze.isMazeCompleted()) newMaze();
+        maze.makeKeeperAct();
+        return maze;
+    }
+
+}
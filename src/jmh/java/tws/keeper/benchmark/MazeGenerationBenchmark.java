@@ -0,0 +1,32 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.Maze;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maze construction, a different seed for every maze
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MazeGenerationBenchmark {
+
+    @Param({"40", "200", "1000"})
+    public int size;
+
+    @Param({"7", "16"})
+    public int keys;
+
+    private long seed = 0;
+
+    @Benchmark
+    public Maze generate() {
+        return Mazes.builder(size, keys, seed++).build(Mazes.IDLE_KEEPER);
+    }
+
+}
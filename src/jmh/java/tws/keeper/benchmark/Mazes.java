@@ -0,0 +1,55 @@
+package tws.keeper.benchmark;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.MazeExplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mazes and maps shared by the benchmarks
+ */
+final class Mazes {
+
+    /**
+     * Keeper for mazes that are only generated or inspected
+     */
+    static final Keeper IDLE_KEEPER = maze -> Action.DO_NOTHING;
+
+    private Mazes() {
+    }
+
+    /**
+     * A seeded maze builder
+     */
+    static Maze.Builder builder(int size, int keys, long seed) {
+        return Maze.builder().height(size).width(size).keys(keys).seed(seed);
+    }
+
+    /**
+     * A map of the maze with every wall already known
+     */
+    static MazeExplorer knownMap(Maze maze) {
+        MazeExplorer map = new MazeExplorer(maze.getHeight(), maze.getWidth());
+        for (int v = 0; v < maze.getHeight(); v++)
+            for (int h = 0; h < maze.getWidth(); h++)
+                if (maze.getCell(v, h) == Cell.WALL) map.markWall(new Position(v, h));
+        return map;
+    }
+
+    /**
+     * Every cell that is not a wall
+     */
+    static List<Position> freeCells(Maze maze) {
+        List<Position> cells = new ArrayList<>();
+        for (int v = 0; v < maze.getHeight(); v++)
+            for (int h = 0; h < maze.getWidth(); h++)
+                if (maze.getCell(v, h) != Cell.WALL) cells.add(new Position(v, h));
+        return cells;
+    }
+
+}
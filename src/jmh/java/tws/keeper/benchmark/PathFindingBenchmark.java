@@ -0,0 +1,66 @@
+package tws.keeper.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tws.keeper.model.Action;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.PathFinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PathFinder.solve between random free cells of a fully known maze
+ * <p>
+ * IDA* can not search the largest mazes in reasonable time, see IdaStarBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathFindingBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"40", "200", "1000"})
+    public int size;
+
+    @Param({"7"})
+    public int keys;
+
+    @Param({"a-star", "weighted-a-star", "bidirectional-a-star", "corridors", "hpa-star", "alt-a-star", "d-star-lite"})
+    public String finder;
+
+    private PathFinder pathFinder;
+    private Position[] starts = new Position[PAIRS];
+    private Position[] targets = new Position[PAIRS];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Maze maze = Mazes.builder(size, keys, 1).build(Mazes.IDLE_KEEPER);
+        pathFinder = PathFinder.named(finder, 1.5).create(Mazes.knownMap(maze));
+        List<Position> cells = Mazes.freeCells(maze);
+        Random random = new Random(1);
+        for (int i = 0; i < PAIRS; i++) {
+            starts[i] = cells.get(random.nextInt(cells.size()));
+            targets[i] = cells.get(random.nextInt(cells.size()));
+        }
+    }
+
+    @Benchmark
+    public List<Action> solve() {
+        int pair = next++ & (PAIRS - 1);
+        try {
+            return pathFinder.solve(starts[pair], targets[pair]);
+        } catch (UnsolvableProblemException upe) {
+            return new ArrayList<>(); // isolated extra cells
+        }
+    }
+
+}
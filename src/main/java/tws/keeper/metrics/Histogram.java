@@ -0,0 +1,125 @@
+package tws.keeper.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values with a bounded relative error, as HdrHistogram does
+ * <p>
+ * Values below 2^SUB_BITS have a bucket each. Above it, every power of two is
+ * split in 2^SUB_BITS buckets, so a value is reported at most 1/2^SUB_BITS (3%)
+ * above it, with a fixed number of buckets covering every long. Buckets are
+ * atomic counters: any thread records without locks, and readers see the
+ * values recorded so far. Threads record in one of several copies of the
+ * buckets, chosen by thread id, so keepers of different threads do not fight
+ * over the cache line of the most common values.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS); // Stripe after stripe
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value, negative values as 0
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet((int) (Thread.currentThread().getId() & (STRIPES - 1)) * BUCKETS + bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * All the values recorded added up
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Highest value recorded, exact
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Mean of the values recorded, exact
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Lowest value with this percentage of the values at or below it, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            snapshot[i % BUCKETS] += count;
+            n += count;
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return i + 1 == BUCKETS ? max.get() : Math.min(lowest(i + 1) - 1, max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget every value
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getPercentile(99.9), getMax());
+    }
+
+    /**
+     * Bucket of a value: its SUB_BITS highest bits and the power of two above them
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - SUB_BITS - Long.numberOfLeadingZeros(value);
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Lowest value of a bucket
+     */
+    static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+}
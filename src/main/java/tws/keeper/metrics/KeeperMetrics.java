@@ -0,0 +1,107 @@
+package tws.keeper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the keepers and their searches, for every keeper of the JVM
+ * <p>
+ * Recording is off unless the JVM is started with -Dkeeper.metrics=true. ENABLED
+ * is a static final constant and every recording point is guarded by it, so the
+ * JIT drops the recording code (and the clock reads) when metrics are off.
+ * Counters are LongAdders and histograms are lock-free, so keepers playing in
+ * different threads record without contention.
+ * <p>
+ * Headless runs read the fields directly (or print report()), the web server
+ * publishes them through Micrometer under /actuator/metrics (see KeeperMeterBinder).
+ */
+public final class KeeperMetrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("keeper.metrics");
+
+    /**
+     * Actions requested from keepers
+     */
+    public static final LongAdder STEPS = new LongAdder();
+    /**
+     * Time a keeper takes to decide an action, in nanoseconds
+     */
+    public static final Histogram STEP_NANOS = new Histogram();
+    /**
+     * Mazes completed
+     */
+    public static final LongAdder EPISODES = new LongAdder();
+    /**
+     * Steps taken to complete a maze
+     */
+    public static final Histogram EPISODE_STEPS = new Histogram();
+    /**
+     * Paths planned by a KeeperAI, the first one to every target included
+     */
+    public static final LongAdder REPLANS = new LongAdder();
+    /**
+     * Paths planned by a KeeperAI to complete a maze
+     */
+    public static final Histogram EPISODE_REPLANS = new Histogram();
+    /**
+     * Cells expanded by every search of the path finder of a KeeperAI
+     */
+    public static final Histogram EXPANDED = new Histogram();
+    /**
+     * Largest open set of every search of the path finder of a KeeperAI
+     */
+    public static final Histogram OPEN_SET_PEAK = new Histogram();
+    /**
+     * Actions of every path planned
+     */
+    public static final Histogram PATH_LENGTH = new Histogram();
+    /**
+     * Time to check whether the planned path is still valid, in nanoseconds
+     */
+    public static final Histogram NEED_UPDATE_NANOS = new Histogram();
+    /**
+     * Cells around the keeper observed
+     */
+    public static final LongAdder OBSERVATIONS = new LongAdder();
+    /**
+     * Exploration steps, of a MazeExplorer or a FrontierExplorer
+     */
+    public static final LongAdder EXPLORATION_STEPS = new LongAdder();
+
+    private KeeperMetrics() {
+    }
+
+    /**
+     * Forget everything recorded
+     */
+    public static void reset() {
+        STEPS.reset();
+        STEP_NANOS.reset();
+        EPISODES.reset();
+        EPISODE_STEPS.reset();
+        REPLANS.reset();
+        EPISODE_REPLANS.reset();
+        EXPANDED.reset();
+        OPEN_SET_PEAK.reset();
+        PATH_LENGTH.reset();
+        NEED_UPDATE_NANOS.reset();
+        OBSERVATIONS.reset();
+        EXPLORATION_STEPS.reset();
+    }
+
+    /**
+     * All the metrics, one per line
+     */
+    public static String report() {
+        return String.format("steps=%d observations=%d explorationSteps=%d replans=%d episodes=%d%n" +
+                        "step ns: %s%n" +
+                        "episode steps: %s%n" +
+                        "episode replans: %s%n" +
+                        "expanded: %s%n" +
+                        "open set peak: %s%n" +
+                        "path length: %s%n" +
+                        "needUpdate ns: %s",
+                STEPS.sum(), OBSERVATIONS.sum(), EXPLORATION_STEPS.sum(), REPLANS.sum(), EPISODES.sum(),
+                STEP_NANOS, EPISODE_STEPS, EPISODE_REPLANS, EXPANDED, OPEN_SET_PEAK, PATH_LENGTH, NEED_UPDATE_NANOS);
+    }
+
+}
@@ -0,0 +1,147 @@
+package tws.keeper.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cells of a maze by index, as Cell ordinals
+ * <p>
+ * On the heap every cell takes a byte. Off the heap cells are packed 4 per byte,
+ * 2 bits each as there are 4 kinds of Cell, in a ByteBuffer: a direct buffer or
+ * a mapped file (see Maze.save and Maze.load). Off-heap cells are not traced by
+ * the garbage collector, so very large mazes do not make its pauses longer.
+ * Stores are not thread safe for writing, as writing a packed cell rewrites the
+ * byte of 3 other cells.
+ */
+public abstract class CellStore {
+
+    /**
+     * Mazes and maps are kept off the heap by default if the JVM is started with -Dkeeper.offHeap=true
+     */
+    public static final boolean OFF_HEAP = Boolean.getBoolean("keeper.offHeap");
+
+    /**
+     * Cells of every 2 bits, the first cell in the lowest bits
+     */
+    static final int CELLS_PER_BYTE = 4;
+
+    /**
+     * A byte per cell in a heap array, every cell a WALL
+     */
+    public static CellStore heap(int size) {
+        return new Heap(size);
+    }
+
+    /**
+     * Cells packed in a direct buffer, every cell a WALL
+     */
+    public static CellStore direct(int size) {
+        CellStore cells = new Packed(ByteBuffer.allocateDirect(packedBytes(size)), size);
+        if (Cell.WALL.ordinal() != 0) // New buffers are zeroed, a WALL in every cell if its ordinal is 0
+            for (int i = 0; i < size; i++) cells.set(i, (byte) Cell.WALL.ordinal());
+        return cells;
+    }
+
+    /**
+     * Cells packed in a buffer from its current position, e.g. a mapped file.
+     * Changes are written to the buffer.
+     */
+    static CellStore packed(ByteBuffer buffer, int size) {
+        if (buffer.remaining() < packedBytes(size))
+            throw new IllegalArgumentException("Buffer too small for " + size + " cells: " + buffer.remaining() + " bytes");
+        return new Packed(buffer.slice(), size);
+    }
+
+    /**
+     * Bytes taken by this many packed cells
+     */
+    static int packedBytes(int size) {
+        return (size + CELLS_PER_BYTE - 1) / CELLS_PER_BYTE;
+    }
+
+    /**
+     * Ordinal of the cell at this index
+     */
+    public abstract byte get(int index);
+
+    /**
+     * Replace the cell at this index by a Cell ordinal
+     */
+    public abstract void set(int index, byte cell);
+
+    /**
+     * Number of cells
+     */
+    public abstract int size();
+
+    /**
+     * Whether cells are outside the heap
+     */
+    public abstract boolean isOffHeap();
+
+    private static class Heap extends CellStore {
+
+        private final byte[] cells;
+
+        Heap(int size) {
+            cells = new byte[size];
+            Arrays.fill(cells, (byte) Cell.WALL.ordinal());
+        }
+
+        @Override
+        public byte get(int index) {
+            return cells[index];
+        }
+
+        @Override
+        public void set(int index, byte cell) {
+            cells[index] = cell;
+        }
+
+        @Override
+        public int size() {
+            return cells.length;
+        }
+
+        @Override
+        public boolean isOffHeap() {
+            return false;
+        }
+    }
+
+    private static class Packed extends CellStore {
+
+        private final ByteBuffer cells;
+        private final int size;
+
+        Packed(ByteBuffer cells, int size) {
+            this.cells = cells;
+            this.size = size;
+        }
+
+        @Override
+        public byte get(int index) {
+            if (index >= size) throw new IndexOutOfBoundsException("Cell " + index + " of " + size);
+            return (byte) (cells.get(index >>> 2) >>> ((index & 3) << 1) & 3);
+        }
+
+        @Override
+        public void set(int index, byte cell) {
+            if (index >= size) throw new IndexOutOfBoundsException("Cell " + index + " of " + size);
+            int shift = (index & 3) << 1;
+            int packed = cells.get(index >>> 2);
+            cells.put(index >>> 2, (byte) (packed & ~(3 << shift) | (cell & 3) << shift));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isOffHeap() {
+            return true;
+        }
+    }
+
+}
@@ -1,27 +1,54 @@
 package tws.keeper.model;
 
+import tws.keeper.metrics.KeeperMetrics;
 import tws.keeper.model.*;
 import tws.keeper.model.Observable;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Random theMaze generator
+ * <p>
+ * Cells are stored row by row as Cell ordinals in a CellStore, so a cell is
+ * identified by its index vertical * width + horizontal and the adjacent cells
+ * are found adding a fixed offset. Positions are only built for the public API.
+ * <p>
+ * Very large mazes can be kept off the heap, generated once and saved to a file,
+ * and then loaded by mapping the file: every process playing it shares its pages.
  */
 public class Maze implements Observable {
 
-    private Cell[][] theMaze; // The theMaze
+    private static final Cell[] CELLS = Cell.values();
+    private static final byte WALL = (byte) Cell.WALL.ordinal();
+    private static final byte PATH = (byte) Cell.PATH.ordinal();
+    private static final byte KEY = (byte) Cell.KEY.ordinal();
+    private static final byte DOOR = (byte) Cell.DOOR.ordinal();
+    private static final int FILE_MAGIC = 0x4B4D5A31; // "KMZ1"
+    private static final int FILE_HEADER = 6 * Integer.BYTES; // magic, height, width, keeper, door, keys
+
+    private CellStore theMaze; // The theMaze
+    private int width; // Row stride of theMaze
+    private int height;
+    private int[] adjacentOffsets; // right, down, left, up
     private Keeper theKeeper; // The keeper
-    private Position keeperPosition;  // The keeperPosition
+    private int keeperIndex; // The keeper cell
+    private Position keeperPosition;  // The keeperPosition, null until requested after a move
     private Position doorPosition; // The door
     private List<Position> keysPositions; // The keys
     private List<Position> keysFoundPositions; // The keys
+    private long[] keysFoundSteps; // Step in which every found key was taken
     private int numberOfKeys; // Total number of keys to find
     private int keysFound = 0; // Keys found
     private boolean mazeCompleted = false; // Is the lock open
+    private long steps = 0; // Actions requested from the keeper
+    private int layoutVersion = 0; // Changes every time a cell changes
+    private Random random; // Source of every random choice while generating
 
     /**
      * Default tws.keeper.maze 40x40 7 keys
@@ -31,41 +58,199 @@ public class Maze implements Observable {
     }
 
     /**
-     * Generate a new tws.keeper.maze
+     * Default tws.keeper.maze 40x40 7 keys, the same layout for the same seed
      */
+    public Maze(Keeper keeper, long seed) {
+        this(keeper, 40, 40, 7, new Random(seed), CellStore.OFF_HEAP);
+    }
+
     private Maze(Keeper keeper, int height, int width, int keys) {
+        this(keeper, height, width, keys, new Random(), CellStore.OFF_HEAP);
+    }
+
+    /**
+     * Generate a new tws.keeper.maze
+     * <p>
+     * Door, keys and keeper are placed in cells taken from the list of carved
+     * cells, so they are always connected, and the extra empty cells are taken
+     * from the list of interior walls, so no cell is tried twice.
+     */
+    private Maze(Keeper keeper, int height, int width, int keys, Random random, boolean offHeap) {
         theKeeper = keeper;
+        this.random = random;
         numberOfKeys = keys;
-        theMaze = new Cell[height][width]; // empty tws.keeper.maze
-        for (Cell[] row : theMaze) Arrays.parallelSetAll(row, (index) -> Cell.WALL); // all cells are walls for starters
+        this.width = width;
+        this.height = height;
+        adjacentOffsets = new int[]{1, width, -1, -width};
+        theMaze = offHeap ? CellStore.direct(height * width) : CellStore.heap(height * width); // all cells are walls for starters
         createRandomPath(); // generate a random tws.keeper.maze
-        doorPosition = switchRandomCell(Cell.PATH, Cell.DOOR); // place the door
-        keysPositions = new ArrayList<>();
-        keysFoundPositions = new ArrayList<>();
-        for (int i = 0; i < numberOfKeys; i++) keysPositions.add(switchRandomCell(Cell.PATH, Cell.KEY)); // the keys
-        for (int i = 0; i < (width * height) / 100; i++)
-            switchRandomCell(Cell.WALL, Cell.PATH); // place a few extra empty cells
-        keeperPosition = randomInternalPosition(Cell.PATH); // place the keeper in an empty cell
+        int[] freeCells = pathCells();
+        int free = freeCells.length;
+        if (free < keys + 2)
+            throw new IllegalArgumentException("Not enough empty cells for " + keys + " keys, the door and the keeper");
+        doorPosition = toPosition(takeRandomCell(freeCells, free--, DOOR)); // place the door
+        keysPositions = new ArrayList<>(keys);
+        keysFoundPositions = new ArrayList<>(keys);
+        keysFoundSteps = new long[keys];
+        for (int i = 0; i < numberOfKeys; i++) keysPositions.add(toPosition(takeRandomCell(freeCells, free--, KEY))); // the keys
+        keeperIndex = freeCells[random.nextInt(free)]; // place the keeper in an empty cell
+        int[] wallCells = interiorWallCells();
+        int walls = wallCells.length;
+        for (int i = 0; i < Math.min(width * height / 100, wallCells.length); i++)
+            takeRandomCell(wallCells, walls--, PATH); // place a few extra empty cells
+    }
+
+    /**
+     * A maze saved to a file, see save
+     */
+    private Maze(Keeper keeper, int height, int width, CellStore cells, int keeperIndex, int doorIndex, int[] keyIndexes) {
+        theKeeper = keeper;
+        this.width = width;
+        this.height = height;
+        adjacentOffsets = new int[]{1, width, -1, -width};
+        theMaze = cells;
+        this.keeperIndex = keeperIndex;
+        doorPosition = toPosition(doorIndex);
+        numberOfKeys = keyIndexes.length;
+        keysPositions = new ArrayList<>(numberOfKeys);
+        for (int index : keyIndexes) keysPositions.add(toPosition(index));
+        keysFoundPositions = new ArrayList<>(numberOfKeys);
+        keysFoundSteps = new long[numberOfKeys];
+    }
+
+    /**
+     * Load a maze saved to a file, mapping its cells
+     * <p>
+     * The file is mapped copy on write: it never changes, and its pages are
+     * shared with every process mapping it until a key is taken in them. If the
+     * file can not be written its cells are copied off the heap instead.
+     * <p>
+     * The keeper must be out of the walls, and the door and the keys in cells of
+     * their type, or the file is rejected as corrupt.
+     */
+    public static Maze load(Path file, Keeper keeper) throws IOException {
+        ByteBuffer buffer;
+        boolean writable = true;
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (AccessDeniedException e) {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            writable = false;
+        }
+        try {
+            buffer = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+
+        if (buffer.remaining() < FILE_HEADER || buffer.getInt() != FILE_MAGIC) throw new IOException("Not a maze file: " + file);
+        int height = buffer.getInt();
+        int width = buffer.getInt();
+        int keeperIndex = buffer.getInt();
+        int doorIndex = buffer.getInt();
+        int keys = buffer.getInt();
+        long size = (long) height * width;
+        if (height < 3 || width < 3 || size > Builder.MAX_CELLS || keys < 0
+                || buffer.remaining() < (long) keys * Integer.BYTES + CellStore.packedBytes((int) size))
+            throw new IOException("Corrupt maze file: " + file);
+        int[] keyIndexes = new int[keys];
+        for (int i = 0; i < keys; i++) keyIndexes[i] = buffer.getInt();
+
+        CellStore cells = CellStore.packed(buffer, (int) size);
+        if (!isCell(cells, keeperIndex) || cells.get(keeperIndex) == WALL || !isCell(cells, doorIndex) || cells.get(doorIndex) != DOOR)
+            throw new IOException("Corrupt maze file: " + file);
+        for (int index : keyIndexes)
+            if (!isCell(cells, index) || cells.get(index) != KEY) throw new IOException("Corrupt maze file: " + file);
+        if (!writable) {
+            CellStore copy = CellStore.direct((int) size);
+            for (int index = 0; index < size; index++) copy.set(index, cells.get(index));
+            cells = copy;
+        }
+        return new Maze(keeper, height, width, cells, keeperIndex, doorIndex, keyIndexes);
+    }
+
+    private static boolean isCell(CellStore cells, int index) {
+        return index >= 0 && index < cells.size();
+    }
+
+    /**
+     * Save the maze as it is now, with the keys still in it, to be loaded with load
+     * <p>
+     * Cells are packed 4 per byte after a header with the size, the keeper, the
+     * door and the keys, all in big-endian ints.
+     */
+    public void save(Path file) throws IOException {
+        List<Position> keys = new ArrayList<>(keysPositions);
+        keys.removeAll(keysFoundPositions);
+        int size = theMaze.size();
+        long length = FILE_HEADER + (long) keys.size() * Integer.BYTES + CellStore.packedBytes(size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(FILE_MAGIC).putInt(height).putInt(width).putInt(keeperIndex)
+                    .putInt(doorPosition.getVertical() * width + doorPosition.getHorizontal()).putInt(keys.size());
+            for (Position key : keys) buffer.putInt(key.getVertical() * width + key.getHorizontal());
+            CellStore cells = CellStore.packed(buffer, size);
+            for (int index = 0; index < size; index++) cells.set(index, theMaze.get(index));
+        }
+    }
+
+    /**
+     * Builder for mazes of any size and number of keys
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
      * The width of the theMaze
      */
-    private int width() {
-        return theMaze[0].length;
+    public int getWidth() {
+        return width;
     }
 
     /**
      * The height of the theMaze
      */
-    private int height() {
-        return theMaze.length;
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Contents of the cell at this position
+     */
+    public Cell getCell(int vertical, int horizontal) {
+        return CELLS[theMaze.get(vertical * width + horizontal)];
+    }
+
+    /**
+     * Whether the cells are outside the heap
+     */
+    public boolean isOffHeap() {
+        return theMaze.isOffHeap();
+    }
+
+    /**
+     * The cells, read by the mazes sharing this layout
+     */
+    CellStore cells() {
+        return theMaze;
+    }
+
+    /**
+     * Changes every time the contents of a cell change (a key is taken), so
+     * anything derived from the cells can be cached until it changes
+     */
+    public int getLayoutVersion() {
+        return layoutVersion;
     }
 
     /**
      * The keeper position
      */
     public Position getKeeperPosition() {
+        if (keeperPosition == null) keeperPosition = toPosition(keeperIndex);
         return keeperPosition;
     }
 
@@ -90,12 +275,20 @@ public class Maze implements Observable {
         return keysFoundPositions;
     }
 
+    /**
+     * Step in which a key was found, for the keys found in order
+     */
+    public long getKeyFoundStep(int found) {
+        if (found >= keysFound) throw new IndexOutOfBoundsException("Only " + keysFound + " keys found");
+        return keysFoundSteps[found];
+    }
+
     /**
      * Contents of the cell up
      */
     @Override
     public Cell lookUp() {
-        return look(cellUp);
+        return look(-width);
     }
 
     /**
@@ -103,7 +296,7 @@ public class Maze implements Observable {
      */
     @Override
     public Cell lookDown() {
-        return look(cellDown);
+        return look(width);
     }
 
     /**
@@ -111,7 +304,7 @@ public class Maze implements Observable {
      */
     @Override
     public Cell lookLeft() {
-        return look(cellLeft);
+        return look(-1);
     }
 
     /**
@@ -119,7 +312,7 @@ public class Maze implements Observable {
      */
     @Override
     public Cell lookRight() {
-        return look(cellRight);
+        return look(1);
     }
 
     /**
@@ -147,10 +340,25 @@ public class Maze implements Observable {
     }
 
     /**
-     * Request an action from the keeper
+     * Request an action from the keeper, and return it
+     */
+    public Action makeKeeperAct() {
+        long start = KeeperMetrics.ENABLED ? System.nanoTime() : 0;
+        Action action = theKeeper.act(this);
+        if (KeeperMetrics.ENABLED) {
+            KeeperMetrics.STEP_NANOS.record(System.nanoTime() - start);
+            KeeperMetrics.STEPS.increment();
+        }
+        steps++;
+        doAction(action);
+        return action;
+    }
+
+    /**
+     * How many times the keeper has acted
      */
-    public void makeKeeperAct() {
-        doAction(theKeeper.act(this));
+    public long getSteps() {
+        return steps;
     }
 
     /**
@@ -160,16 +368,16 @@ public class Maze implements Observable {
         if (!mazeCompleted) {
             switch (action) {
                 case GO_UP:
-                    walk(cellUp);
+                    walk(-width);
                     break;
                 case GO_DOWN:
-                    walk(cellDown);
+                    walk(width);
                     break;
                 case GO_LEFT:
-                    walk(cellLeft);
+                    walk(-1);
                     break;
                 case GO_RIGHT:
-                    walk(cellRight);
+                    walk(1);
                     break;
             }
         }
@@ -177,116 +385,151 @@ public class Maze implements Observable {
 
     /**
      * Generate a random path in the theMaze starting in this position
+     * <p>
+     * Pending cells are taken in random order: picking a random pending cell
+     * is what popping a shuffled stack does, without shuffling it every time.
      */
     private void createRandomPath() {
-        Stack<Position> pendingPaths = new Stack<>();
-        pendingPaths.push(randomInternalPosition(Cell.WALL));
+        int[] pendingPaths = new int[16];
+        int pending = 0;
+        pendingPaths[pending++] = randomInternalPosition(WALL);
         do {
-            Position pos = pendingPaths.pop();
-            if (canContinue(pos)) {
-                emptyCell(pos);
-                pendingPaths.addAll(getAdjacentWalls(pos));
-                Collections.shuffle(pendingPaths);
+            int next = random.nextInt(pending);
+            int index = pendingPaths[next];
+            pendingPaths[next] = pendingPaths[--pending];
+            if (canContinue(index)) {
+                emptyCell(index);
+                if (pending + adjacentOffsets.length > pendingPaths.length)
+                    pendingPaths = Arrays.copyOf(pendingPaths, 2 * pendingPaths.length);
+                for (int offset : adjacentOffsets)
+                    if (isWall(index + offset)) pendingPaths[pending++] = index + offset;
             }
         }
-        while (!pendingPaths.isEmpty());
+        while (pending > 0);
     }
 
     /**
      * Get possible exits
      */
-    private boolean canContinue(Position position) {
-        return isWithinLimits(position) && isWall(position) && getAdjacentWalls(position).size() > 2;
+    private boolean canContinue(int index) {
+        return isWithinLimits(index) && isWall(index) && adjacentWalls(index) > 2;
     }
 
     /**
-     * Returns value of cell at this position
+     * Indexes of every empty cell
      */
-    private Cell cellAt(Position position) {
-        return theMaze[position.getVertical()][position.getHorizontal()];
+    private int[] pathCells() {
+        int count = 0;
+        for (int index = 0; index < theMaze.size(); index++) if (theMaze.get(index) == PATH) count++;
+        int[] cells = new int[count];
+        for (int index = 0, i = 0; i < count; index++) if (theMaze.get(index) == PATH) cells[i++] = index;
+        return cells;
     }
 
     /**
-     * Empties this cell
+     * Indexes of every wall that is not on the border
      */
-    private void emptyCell(Position position) {
-        setCell(position, Cell.PATH);
+    private int[] interiorWallCells() {
+        int count = 0;
+        for (int index = 0; index < theMaze.size(); index++) if (isInternalWall(index)) count++;
+        int[] cells = new int[count];
+        for (int index = 0, i = 0; i < count; index++) if (isInternalWall(index)) cells[i++] = index;
+        return cells;
+    }
+
+    private boolean isInternalWall(int index) {
+        return theMaze.get(index) == WALL && isWithinLimits(index);
     }
 
     /**
-     * Returns value of cell at this position
+     * Take a random cell from the first count cells of the list and set its value
      */
-    private void setCell(Position position, Cell cell) {
-        theMaze[position.getVertical()][position.getHorizontal()] = cell;
+    private int takeRandomCell(int[] cells, int count, byte value) {
+        int next = random.nextInt(count);
+        int index = cells[next];
+        cells[next] = cells[count - 1];
+        theMaze.set(index, value);
+        return index;
     }
 
     /**
-     * Is this a wall
+     * Position of a cell index
      */
-    private boolean isWall(Position position) {
-        return cellAt(position).equals(Cell.WALL);
+    private Position toPosition(int index) {
+        return new Position(index / width, index % width);
     }
 
     /**
-     * Is this a valid position
+     * Empties this cell
      */
-    private boolean isWithinLimits(Position position) {
-        return (position.getVertical() > 0) && (position.getVertical() < height() - 1) && (position.getHorizontal() > 0) && (position.getHorizontal() < width() - 1);
+    private void emptyCell(int index) {
+        theMaze.set(index, PATH);
     }
 
     /**
-     * Return an random internal cell with specified value
+     * Is this a wall
      */
-    private Position randomInternalPosition(Cell cellvalue) {
-        Position randomPosition;
-        do randomPosition = new Position(1 + new Random().nextInt(height() - 2), 1 + new Random().nextInt(width() - 2));
-        while (!cellAt(randomPosition).equals(cellvalue));
-        return randomPosition;
+    private boolean isWall(int index) {
+        return theMaze.get(index) == WALL;
     }
 
     /**
-     * Randomly place objects in the theMaze
+     * Is this a valid position
      */
-    private Position switchRandomCell(Cell from, Cell to) {
-        Position randomPosition = randomInternalPosition(from);
-        setCell(randomPosition, to);
-        return randomPosition;
+    private boolean isWithinLimits(int index) {
+        int vertical = index / width;
+        int horizontal = index % width;
+        return (vertical > 0) && (vertical < getHeight() - 1) && (horizontal > 0) && (horizontal < getWidth() - 1);
     }
 
     /**
-     * Adjacent cell functions
+     * Return an random internal cell with specified value
      */
-    private static UnaryOperator<Position> cellUp = position -> new Position(position.getVertical() - 1, position.getHorizontal());
-    private static UnaryOperator<Position> cellDown = position -> new Position(position.getVertical() + 1, position.getHorizontal());
-    private static UnaryOperator<Position> cellLeft = position -> new Position(position.getVertical(), position.getHorizontal() - 1);
-    private static UnaryOperator<Position> cellRight = position -> new Position(position.getVertical(), position.getHorizontal() + 1);
+    private int randomInternalPosition(byte cellvalue) {
+        int randomIndex;
+        do randomIndex = (1 + random.nextInt(getHeight() - 2)) * width + 1 + random.nextInt(getWidth() - 2);
+        while (theMaze.get(randomIndex) != cellvalue);
+        return randomIndex;
+    }
 
     /**
-     * Adjacent walls
+     * Number of adjacent walls
      */
-    private List<Position> getAdjacentWalls(Position position) {
-        return Stream.of(cellRight, cellDown, cellLeft, cellUp).map((cell) -> cell.apply(position)).filter(this::isWall).collect(Collectors.toList());
+    private int adjacentWalls(int index) {
+        int walls = 0;
+        for (int offset : adjacentOffsets) if (isWall(index + offset)) walls++;
+        return walls;
     }
 
     /**
      * Look in a direction
      */
-    private Cell look(UnaryOperator<Position> where) {
-        return cellAt(where.apply(getKeeperPosition()));
+    private Cell look(int offset) {
+        return CELLS[theMaze.get(keeperIndex + offset)];
     }
 
     /**
      * Move the keeperPosition
      */
-    private void walk(UnaryOperator<Position> where) {
-        if (!look(where).equals(Cell.WALL)) {
-            keeperPosition = where.apply(keeperPosition);
-            if (cellAt(keeperPosition).equals(Cell.KEY)) {
-                keysFoundPositions.add(keeperPosition);
-                setCell(keeperPosition, Cell.PATH);
-                keysFound++;
+    private void walk(int offset) {
+        int target = keeperIndex + offset;
+        byte cell = theMaze.get(target);
+        if (cell != WALL) {
+            keeperIndex = target;
+            keeperPosition = null;
+            if (cell == KEY) {
+                keysFoundPositions.add(getKeeperPosition());
+                theMaze.set(target, PATH);
+                layoutVersion++;
+                keysFoundSteps[keysFound++] = steps;
+            }
+            if (cell == DOOR && (keysFound == getTotalNumberOfKeys())) {
+                mazeCompleted = true;
+                if (KeeperMetrics.ENABLED) {
+                    KeeperMetrics.EPISODES.increment();
+                    KeeperMetrics.EPISODE_STEPS.record(steps);
+                }
             }
-            if (cellAt(keeperPosition).equals(Cell.DOOR) && (keysFound == getTotalNumberOfKeys())) mazeCompleted = true;
         }
     }
 
@@ -294,19 +537,121 @@ public class Maze implements Observable {
      * Return a json representation of this tws.keeper.maze
      */
     public String toJson() {
-        return "{\n" +
-                "\t\"height\":" + height() + ",\n" +
-                "\t\"width\":" + width() + ",\n" +
-                "\t\"cells\": [\n" + rowsToJson(theMaze) + "\n\t]\n" +
-                "}" + "\n";
+        StringBuilder json = new StringBuilder(32 + theMaze.size() * 7 + height * 5);
+        json.append("{\n\t\"height\":").append(height).append(",\n\t\"width\":").append(width).append(",\n\t\"cells\": [\n");
+        for (int row = 0; row < height; row++) {
+            json.append(row == 0 ? "\t\t[" : ",\n\t\t[");
+            for (int index = row * width; index < (row + 1) * width; index++)
+                json.append(index == row * width ? "\"" : ",\"").append(CELLS[theMaze.get(index)]).append('"');
+            json.append(']');
+        }
+        return json.append("\n\t]\n}\n").toString();
     }
 
-    private String rowsToJson(Cell[][] rows) {
-        return Arrays.stream(rows).map(row -> rowToJson(row)).collect(Collectors.joining(",\n"));
-    }
+    /**
+     * Configures and generates a maze
+     */
+    public static class Builder {
+
+        private static final long MAX_CELLS = 1L << 30;
+
+        private int height = 40;
+        private int width = 40;
+        private int keys = 7;
+        private Random random;
+        private Long seed;
+        private boolean offHeap = CellStore.OFF_HEAP;
+
+        private Builder() {
+        }
+
+        /**
+         * Number of rows, borders included
+         */
+        public Builder height(int height) {
+            this.height = height;
+            return this;
+        }
+
+        /**
+         * Number of columns, borders included
+         */
+        public Builder width(int width) {
+            this.width = width;
+            return this;
+        }
+
+        /**
+         * Number of keys to find
+         */
+        public Builder keys(int keys) {
+            this.keys = keys;
+            return this;
+        }
+
+        /**
+         * Source of every random choice, a new Random by default
+         */
+        public Builder random(Random random) {
+            this.random = random;
+            this.seed = null;
+            return this;
+        }
+
+        /**
+         * Every maze built with the same seed and settings has the same layout,
+         * keys, door and keeper position
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            this.random = null;
+            return this;
+        }
+
+        /**
+         * Keep the cells off the heap, packed in a direct buffer. Off by
+         * default unless the JVM is started with -Dkeeper.offHeap=true
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Configured number of rows
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Configured number of columns
+         */
+        public int getWidth() {
+            return width;
+        }
 
-    private String rowToJson(Cell[] row) {
-        return "\t\t[" + Arrays.stream(row).map(cell -> "\"" + cell.toString() + "\"").collect(Collectors.joining(",")) + "]";
+        /**
+         * Generate the maze for this keeper
+         */
+        public Maze build(Keeper keeper) {
+            if (height < 3 || width < 3)
+                throw new IllegalArgumentException("A maze needs at least 3x3 cells: " + height + "x" + width);
+            if ((long) height * width > MAX_CELLS)
+                throw new IllegalArgumentException("Maze too big: " + height + "x" + width);
+            if (keys < 0)
+                throw new IllegalArgumentException("Negative number of keys: " + keys);
+            return new Maze(keeper, height, width, keys, random != null ? random : seed != null ? new Random(seed) : new Random(), offHeap);
+        }
+
+        /**
+         * Generate a maze played by all these keepers at once, with the same
+         * layout as a single keeper maze of the same settings
+         */
+        public SharedMaze buildShared(List<? extends Keeper> keepers) {
+            if (keepers.isEmpty()) throw new IllegalArgumentException("A shared maze needs at least one keeper");
+            return new SharedMaze(build(null), keepers);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package tws.keeper.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import tws.keeper.metrics.KeeperMetrics;
+
+/**
+ * A maze played by several keepers at once
+ * <p>
+ * The layout is generated as for a single keeper (see Maze.Builder.buildShared)
+ * and every keeper starts in the cell of the single keeper. Walls, paths and the
+ * door never change, so they are read without synchronisation. Each key has an
+ * owner, set with a compare and set by the first keeper walking into it: every
+ * key is taken by exactly one keeper, and the other ones see an empty cell from
+ * then on. The maze is completed by the first keeper acting on the door once
+ * every key has been taken, by any keeper.
+ * <p>
+ * Each keeper acts through its own View, which holds its position and steps and
+ * must be used by one thread at a time. Views of different keepers can act
+ * concurrently. Completed episodes are not counted in KeeperMetrics here: the
+ * total steps are only known once every keeper has stopped, see TeamRunner.
+ */
+public class SharedMaze {
+
+    private static final Cell[] CELLS = Cell.values();
+    private static final byte WALL = (byte) Cell.WALL.ordinal();
+    private static final byte KEY = (byte) Cell.KEY.ordinal();
+    private static final byte DOOR = (byte) Cell.DOOR.ordinal();
+    private static final int NO_OWNER = -1;
+
+    private final CellStore theMaze; // Cells of the layout, keys included, never written
+    private final int width;
+    private final int height;
+    private final int[] keyCells; // Sorted cell of every key
+    private final AtomicIntegerArray keyOwners; // Keeper taking every key, NO_OWNER until taken
+    private final AtomicInteger keysFound = new AtomicInteger();
+    private final AtomicInteger finisher = new AtomicInteger(NO_OWNER); // Keeper completing the maze
+    private final Position doorPosition;
+    private final List<View> views;
+
+    /**
+     * Share the layout of a maze, its keeper is not used and its cells are read in place
+     */
+    SharedMaze(Maze layout, List<? extends Keeper> keepers) {
+        width = layout.getWidth();
+        height = layout.getHeight();
+        theMaze = layout.cells();
+        keyCells = new int[layout.getTotalNumberOfKeys()];
+        for (int i = 0; i < keyCells.length; i++) {
+            Position key = layout.getKeysPositions().get(i);
+            keyCells[i] = key.getVertical() * width + key.getHorizontal();
+        }
+        Arrays.sort(keyCells);
+        keyOwners = new AtomicIntegerArray(keyCells.length);
+        for (int i = 0; i < keyCells.length; i++) keyOwners.set(i, NO_OWNER);
+        doorPosition = layout.getDoorPosition();
+        Position start = layout.getKeeperPosition();
+        List<View> views = new ArrayList<>(keepers.size());
+        for (Keeper keeper : keepers) views.add(new View(views.size(), keeper, start.getVertical() * width + start.getHorizontal()));
+        this.views = Collections.unmodifiableList(views);
+    }
+
+    /**
+     * The width of the maze
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * The height of the maze
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The door position
+     */
+    public Position getDoorPosition() {
+        return doorPosition;
+    }
+
+    /**
+     * Contents of the cell at this position, keys taken are empty cells
+     */
+    public Cell getCell(int vertical, int horizontal) {
+        return cell(vertical * width + horizontal);
+    }
+
+    /**
+     * One view per keeper, in the order of the keepers
+     */
+    public List<View> getViews() {
+        return views;
+    }
+
+    /**
+     * How many keys in total
+     */
+    public int getTotalNumberOfKeys() {
+        return keyCells.length;
+    }
+
+    /**
+     * How many keys have been taken by every keeper
+     */
+    public int getKeysFound() {
+        return keysFound.get();
+    }
+
+    /**
+     * Keeper taking a key, -1 if it has not been taken
+     */
+    public int getKeyOwner(Position key) {
+        int i = Arrays.binarySearch(keyCells, key.getVertical() * width + key.getHorizontal());
+        if (i < 0) throw new IllegalArgumentException("No key at " + key);
+        return keyOwners.get(i);
+    }
+
+    /**
+     * Have all the keys been taken and the door reached?
+     */
+    public boolean isMazeCompleted() {
+        return finisher.get() != NO_OWNER;
+    }
+
+    /**
+     * Keeper reaching the door, -1 while the maze is not completed
+     */
+    public int getFinisher() {
+        return finisher.get();
+    }
+
+    /**
+     * Steps of every keeper added up, read once the keepers have stopped
+     */
+    public long getTotalSteps() {
+        long steps = 0;
+        for (View view : views) steps += view.getSteps();
+        return steps;
+    }
+
+    private Cell cell(int index) {
+        byte cell = theMaze.get(index);
+        if (cell == KEY && keyOwners.get(Arrays.binarySearch(keyCells, index)) != NO_OWNER) return Cell.PATH;
+        return CELLS[cell];
+    }
+
+    /**
+     * The maze as seen and played by one keeper
+     */
+    public class View implements Observable {
+
+        private final int id;
+        private final Keeper keeper;
+        private int keeperIndex;
+        private Position keeperPosition; // null until requested after a move
+        private long steps = 0;
+        private int keysTaken = 0;
+
+        private View(int id, Keeper keeper, int keeperIndex) {
+            this.id = id;
+            this.keeper = keeper;
+            this.keeperIndex = keeperIndex;
+        }
+
+        /**
+         * Number of the keeper, its index in getViews()
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * The maze shared with the other keepers
+         */
+        public SharedMaze getMaze() {
+            return SharedMaze.this;
+        }
+
+        @Override
+        public Position getKeeperPosition() {
+            if (keeperPosition == null) keeperPosition = new Position(keeperIndex / width, keeperIndex % width);
+            return keeperPosition;
+        }
+
+        @Override
+        public Cell lookUp() {
+            return cell(keeperIndex - width);
+        }
+
+        @Override
+        public Cell lookDown() {
+            return cell(keeperIndex + width);
+        }
+
+        @Override
+        public Cell lookLeft() {
+            return cell(keeperIndex - 1);
+        }
+
+        @Override
+        public Cell lookRight() {
+            return cell(keeperIndex + 1);
+        }
+
+        /**
+         * How many keys have been taken by every keeper
+         */
+        @Override
+        public int getKeysFound() {
+            return keysFound.get();
+        }
+
+        @Override
+        public int getTotalNumberOfKeys() {
+            return keyCells.length;
+        }
+
+        @Override
+        public boolean isMazeCompleted() {
+            return finisher.get() != NO_OWNER;
+        }
+
+        /**
+         * How many keys this keeper has taken
+         */
+        public int getKeysTaken() {
+            return keysTaken;
+        }
+
+        /**
+         * How many times this keeper has acted
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Request an action from this keeper, and return it
+         */
+        public Action makeKeeperAct() {
+            long start = KeeperMetrics.ENABLED ? System.nanoTime() : 0;
+            Action action = keeper.act(this);
+            if (KeeperMetrics.ENABLED) {
+                KeeperMetrics.STEP_NANOS.record(System.nanoTime() - start);
+                KeeperMetrics.STEPS.increment();
+            }
+            steps++;
+            if (!isMazeCompleted()) {
+                switch (action) {
+                    case GO_UP:
+                        walk(-width);
+                        break;
+                    case GO_DOWN:
+                        walk(width);
+                        break;
+                    case GO_LEFT:
+                        walk(-1);
+                        break;
+                    case GO_RIGHT:
+                        walk(1);
+                        break;
+                }
+                if (theMaze.get(keeperIndex) == DOOR && keysFound.get() == keyCells.length) finisher.compareAndSet(NO_OWNER, id);
+            }
+            return action;
+        }
+
+        /**
+         * Move the keeper, claiming the key of the cell if nobody took it
+         */
+        private void walk(int offset) {
+            int target = keeperIndex + offset;
+            byte cell = theMaze.get(target);
+            if (cell == WALL) return;
+            keeperIndex = target;
+            keeperPosition = null;
+            if (cell == KEY && keyOwners.compareAndSet(Arrays.binarySearch(keyCells, target), NO_OWNER, id)) {
+                keysTaken++;
+                keysFound.incrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package tws.keeper.simulation;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Observable;
+
+import java.util.Arrays;
+
+/**
+ * Compact sequence of the actions taken by a keeper, one byte per action
+ * <p>
+ * Logs can be written as text, one letter per action (U, D, L, R and N for
+ * DO_NOTHING), to keep them next to the seed of the maze they were recorded in.
+ */
+public class ActionLog {
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final String LETTERS = "UDLRN"; // in Action order
+
+    private byte[] actions = new byte[64];
+    private int size = 0;
+
+    /**
+     * Append an action
+     */
+    public void add(Action action) {
+        if (size == actions.length) actions = Arrays.copyOf(actions, 2 * size);
+        actions[size++] = (byte) action.ordinal();
+    }
+
+    /**
+     * The action at this step
+     */
+    public Action get(int step) {
+        if (step >= size) throw new IndexOutOfBoundsException("Step " + step + " of " + size);
+        return ACTIONS[actions[step]];
+    }
+
+    /**
+     * Number of recorded actions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A keeper that acts like this one, adding every action to the log
+     */
+    public Keeper record(Keeper keeper) {
+        return maze -> {
+            Action action = keeper.act(maze);
+            add(action);
+            return action;
+        };
+    }
+
+    /**
+     * A keeper that takes the logged actions in order, and does nothing once they run out
+     */
+    public Keeper play() {
+        return new Keeper() {
+            private int step = 0;
+
+            @Override
+            public Action act(Observable maze) {
+                return step < size ? ACTIONS[actions[step++]] : Action.DO_NOTHING;
+            }
+        };
+    }
+
+    /**
+     * Read a log written by toString
+     */
+    public static ActionLog parse(String text) {
+        ActionLog log = new ActionLog();
+        for (int i = 0; i < text.length(); i++) {
+            int action = LETTERS.indexOf(text.charAt(i));
+            if (action < 0) throw new IllegalArgumentException("Unknown action '" + text.charAt(i) + "' at " + i);
+            log.add(ACTIONS[action]);
+        }
+        return log;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(size);
+        for (int i = 0; i < size; i++) text.append(LETTERS.charAt(actions[i]));
+        return text.toString();
+    }
+
+}
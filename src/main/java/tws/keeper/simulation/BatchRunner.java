@@ -0,0 +1,196 @@
+package tws.keeper.simulation;
+
+import tws.keeper.metrics.KeeperMetrics;
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Maze;
+import tws.keeper.solution.KeeperAI;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many keeper episodes without the web server, spread over a fork-join pool
+ * <p>
+ * Episode i is played in the maze of seed baseSeed + i, so every run of the
+ * same batch plays the same mazes and a failed episode can be recorded and
+ * replayed from its seed alone.
+ * <p>
+ * From the command line, arguments are name=value pairs, e.g.
+ * {@code episodes=100000 size=40 keys=7 seed=0 maxSteps=100000 threads=8}
+ * <p>
+ * With -Dkeeper.metrics=true the metrics of the keepers are printed too, see KeeperMetrics.
+ */
+public class BatchRunner {
+
+    private static final int EPISODES_PER_TASK = 8;
+
+    /**
+     * Creates a keeper for a maze of this size
+     */
+    public interface KeeperFactory {
+        Keeper create(int height, int width);
+    }
+
+    private int height = 40;
+    private int width = 40;
+    private int keys = 7;
+    private long baseSeed = 0;
+    private int maxSteps = 100_000;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private KeeperFactory keepers = KeeperAI::new;
+
+    /**
+     * Maze size, borders included
+     */
+    public BatchRunner size(int height, int width) {
+        this.height = height;
+        this.width = width;
+        return this;
+    }
+
+    /**
+     * Keys of every maze
+     */
+    public BatchRunner keys(int keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    /**
+     * Seed of the first episode
+     */
+    public BatchRunner seed(long baseSeed) {
+        this.baseSeed = baseSeed;
+        return this;
+    }
+
+    /**
+     * Step budget of an episode, it fails if the maze is not completed within it
+     */
+    public BatchRunner maxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+        return this;
+    }
+
+    /**
+     * Number of worker threads
+     */
+    public BatchRunner parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * The keepers to evaluate, KeeperAI by default
+     */
+    public BatchRunner keepers(KeeperFactory keepers) {
+        this.keepers = keepers;
+        return this;
+    }
+
+    /**
+     * Builder of the maze of an episode
+     */
+    public Maze.Builder maze(long seed) {
+        return Maze.builder().height(height).width(width).keys(keys).seed(seed);
+    }
+
+    /**
+     * Run the episodes and wait for all of them
+     */
+    public BatchStatistics run(int episodes) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            BatchStatistics statistics = pool.invoke(new Episodes(0, episodes));
+            statistics.setElapsedNanos(System.nanoTime() - start);
+            return statistics;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play one episode
+     */
+    private void runEpisode(long seed, BatchStatistics statistics) {
+        long start = System.nanoTime();
+        int steps = 0;
+        Maze maze = null;
+        boolean error = false;
+        try {
+            maze = maze(seed).build(keepers.create(height, width));
+            while (!maze.isMazeCompleted() && steps < maxSteps) {
+                maze.makeKeeperAct();
+                steps++;
+            }
+        } catch (RuntimeException e) {
+            error = true;
+        }
+        statistics.add(seed, steps, maze != null && maze.isMazeCompleted(), error, System.nanoTime() - start);
+    }
+
+    /**
+     * A range of episodes, split in halves until it is small enough
+     */
+    private class Episodes extends RecursiveTask<BatchStatistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Episodes(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BatchStatistics compute() {
+            if (to - from <= EPISODES_PER_TASK) {
+                BatchStatistics statistics = new BatchStatistics();
+                for (int i = from; i < to; i++) runEpisode(baseSeed + i, statistics);
+                return statistics;
+            }
+            int middle = (from + to) >>> 1;
+            Episodes left = new Episodes(from, middle);
+            left.fork();
+            BatchStatistics right = new Episodes(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        int episodes = 1000;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("Expected name=value: " + arg);
+            switch (option[0]) {
+                case "episodes":
+                    episodes = Integer.parseInt(option[1]);
+                    break;
+                case "size":
+                    runner.size(Integer.parseInt(option[1]), Integer.parseInt(option[1]));
+                    break;
+                case "keys":
+                    runner.keys(Integer.parseInt(option[1]));
+                    break;
+                case "seed":
+                    runner.seed(Long.parseLong(option[1]));
+                    break;
+                case "maxSteps":
+                    runner.maxSteps(Integer.parseInt(option[1]));
+                    break;
+                case "threads":
+                    runner.parallelism(Integer.parseInt(option[1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        System.out.println(runner.run(episodes));
+        if (KeeperMetrics.ENABLED) System.out.println(KeeperMetrics.report());
+    }
+
+}
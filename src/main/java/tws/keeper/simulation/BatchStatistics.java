@@ -0,0 +1,171 @@
+package tws.keeper.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of a batch of episodes
+ * <p>
+ * Each worker fills its own instance and they are merged at the end, so
+ * recording an episode needs no synchronisation.
+ */
+public class BatchStatistics {
+
+    private static final int MAX_FAILED_SEEDS = 100;
+
+    private int episodes = 0;
+    private int completed = 0;
+    private int errors = 0; // episodes ended by an exception
+    private long totalSteps = 0; // of completed episodes
+    private int minSteps = Integer.MAX_VALUE;
+    private int maxSteps = 0;
+    private long totalEpisodeNanos = 0;
+    private long maxEpisodeNanos = 0;
+    private long elapsedNanos = 0;
+    private List<Long> failedSeeds = new ArrayList<>();
+
+    /**
+     * Record an episode
+     */
+    void add(long seed, int steps, boolean mazeCompleted, boolean error, long nanos) {
+        episodes++;
+        totalEpisodeNanos += nanos;
+        maxEpisodeNanos = Math.max(maxEpisodeNanos, nanos);
+        if (mazeCompleted) {
+            completed++;
+            totalSteps += steps;
+            minSteps = Math.min(minSteps, steps);
+            maxSteps = Math.max(maxSteps, steps);
+        } else {
+            if (error) errors++;
+            if (failedSeeds.size() < MAX_FAILED_SEEDS) failedSeeds.add(seed);
+        }
+    }
+
+    /**
+     * Add the episodes of another batch
+     */
+    BatchStatistics merge(BatchStatistics other) {
+        episodes += other.episodes;
+        completed += other.completed;
+        errors += other.errors;
+        totalSteps += other.totalSteps;
+        minSteps = Math.min(minSteps, other.minSteps);
+        maxSteps = Math.max(maxSteps, other.maxSteps);
+        totalEpisodeNanos += other.totalEpisodeNanos;
+        maxEpisodeNanos = Math.max(maxEpisodeNanos, other.maxEpisodeNanos);
+        for (Long seed : other.failedSeeds) if (failedSeeds.size() < MAX_FAILED_SEEDS) failedSeeds.add(seed);
+        return this;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Episodes run
+     */
+    public int getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Episodes where the maze was completed
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Episodes where the maze was not completed within the step budget or the keeper failed
+     */
+    public int getFailures() {
+        return episodes - completed;
+    }
+
+    /**
+     * Episodes ended by an exception
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Steps of all completed episodes
+     */
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    /**
+     * Mean steps to complete a maze
+     */
+    public double getMeanSteps() {
+        return completed == 0 ? 0 : (double) totalSteps / completed;
+    }
+
+    /**
+     * Fewest steps to complete a maze
+     */
+    public int getMinSteps() {
+        return completed == 0 ? 0 : minSteps;
+    }
+
+    /**
+     * Most steps to complete a maze
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Mean time of an episode, maze generation included
+     */
+    public double getMeanEpisodeMillis() {
+        return episodes == 0 ? 0 : totalEpisodeNanos / 1e6 / episodes;
+    }
+
+    /**
+     * Longest episode
+     */
+    public double getMaxEpisodeMillis() {
+        return maxEpisodeNanos / 1e6;
+    }
+
+    /**
+     * Wall-clock time of the whole batch
+     */
+    public double getElapsedMillis() {
+        return elapsedNanos / 1e6;
+    }
+
+    /**
+     * Episodes per second of wall-clock time
+     */
+    public double getEpisodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : episodes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Seeds of the first failed episodes, to replay them
+     */
+    public List<Long> getFailedSeeds() {
+        return Collections.unmodifiableList(failedSeeds);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("episodes=%d completed=%d failures=%d (errors=%d)%n" +
+                        "steps: mean=%.1f min=%d max=%d%n" +
+                        "episode ms: mean=%.3f max=%.3f%n" +
+                        "elapsed ms=%.1f episodes/s=%.1f%n" +
+                        "failed seeds=%s",
+                episodes, completed, getFailures(), errors,
+                getMeanSteps(), getMinSteps(), maxSteps,
+                getMeanEpisodeMillis(), getMaxEpisodeMillis(),
+                getElapsedMillis(), getEpisodesPerSecond(),
+                failedSeeds);
+    }
+
+}
@@ -0,0 +1,103 @@
+package tws.keeper.simulation;
+
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+
+/**
+ * Records keeper episodes and plays them again against the same seeded maze
+ * <p>
+ * A replay does not run the keeper logic, so its steps and timing only depend
+ * on the maze, and two builds can be compared running the same logs.
+ */
+public class Replayer {
+
+    private Replayer() {
+    }
+
+    /**
+     * Let the keeper act in a maze built by this (seeded) builder until the maze
+     * is completed or maxSteps are taken, logging every action
+     */
+    public static ActionLog record(Maze.Builder mazeBuilder, Keeper keeper, int maxSteps) {
+        ActionLog log = new ActionLog();
+        Maze maze = mazeBuilder.build(log.record(keeper));
+        for (int step = 0; step < maxSteps && !maze.isMazeCompleted(); step++) maze.makeKeeperAct();
+        return log;
+    }
+
+    /**
+     * Take every logged action in a maze built by this (seeded) builder
+     */
+    public static Result replay(Maze.Builder mazeBuilder, ActionLog log) {
+        Maze maze = mazeBuilder.build(log.play());
+        long start = System.nanoTime();
+        int steps = 0;
+        while (steps < log.size() && !maze.isMazeCompleted()) {
+            maze.makeKeeperAct();
+            steps++;
+        }
+        return new Result(steps, maze.isMazeCompleted(), maze.getKeysFound(), maze.getKeeperPosition(), System.nanoTime() - start);
+    }
+
+    /**
+     * Outcome of a replay
+     */
+    public static class Result {
+
+        private final int steps;
+        private final boolean completed;
+        private final int keysFound;
+        private final Position keeperPosition;
+        private final long elapsedNanos;
+
+        private Result(int steps, boolean completed, int keysFound, Position keeperPosition, long elapsedNanos) {
+            this.steps = steps;
+            this.completed = completed;
+            this.keysFound = keysFound;
+            this.keeperPosition = keeperPosition;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Steps taken before the log ran out or the maze was completed
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Was the maze completed
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Keys found
+         */
+        public int getKeysFound() {
+            return keysFound;
+        }
+
+        /**
+         * Final keeper position
+         */
+        public Position getKeeperPosition() {
+            return keeperPosition;
+        }
+
+        /**
+         * Time spent taking the steps
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Replay(steps=" + steps + ",completed=" + completed + ",keys=" + keysFound + ",keeper=" + keeperPosition + ",ms=" + elapsedNanos / 1e6 + ")";
+        }
+    }
+
+}
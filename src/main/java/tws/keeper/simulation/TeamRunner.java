@@ -0,0 +1,249 @@
+package tws.keeper.simulation;
+
+import tws.keeper.metrics.KeeperMetrics;
+import tws.keeper.model.Maze;
+import tws.keeper.model.SharedMaze;
+import tws.keeper.solution.DStarLite;
+import tws.keeper.solution.KeeperAI;
+import tws.keeper.solution.TeamMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays one maze with several keepers at once, one thread per keeper
+ * <p>
+ * The keepers are KeeperAI, playing a SharedMaze and, unless told otherwise,
+ * sharing what they see through a TeamMap.
+ * <p>
+ * From the command line, arguments are name=value pairs, e.g.
+ * {@code size=201 keys=20 seed=0 maxSteps=1000000 keepers=4 shared=true inTurns=false}
+ * <p>
+ * With -Dkeeper.metrics=true the metrics of the keepers are printed too, see KeeperMetrics.
+ */
+public class TeamRunner {
+
+    private int height = 40;
+    private int width = 40;
+    private int keys = 7;
+    private long seed = 0;
+    private int maxSteps = 100_000;
+    private int keepers = Runtime.getRuntime().availableProcessors();
+    private boolean sharedMap = true;
+    private boolean inTurns = false;
+
+    /**
+     * Maze size, borders included
+     */
+    public TeamRunner size(int height, int width) {
+        this.height = height;
+        this.width = width;
+        return this;
+    }
+
+    /**
+     * Keys of the maze
+     */
+    public TeamRunner keys(int keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    /**
+     * Seed of the maze
+     */
+    public TeamRunner seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Step budget of every keeper
+     */
+    public TeamRunner maxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+        return this;
+    }
+
+    /**
+     * Number of keepers, each one in its own thread
+     */
+    public TeamRunner keepers(int keepers) {
+        this.keepers = keepers;
+        return this;
+    }
+
+    /**
+     * Whether the keepers share what they see
+     */
+    public TeamRunner sharedMap(boolean sharedMap) {
+        this.sharedMap = sharedMap;
+        return this;
+    }
+
+    /**
+     * Whether the keepers act in turns, one step each, in the calling thread.
+     * Runs in turns are repeatable, e.g. to replay a failure of a concurrent run
+     */
+    public TeamRunner inTurns(boolean inTurns) {
+        this.inTurns = inTurns;
+        return this;
+    }
+
+    /**
+     * Play the maze until it is completed or every keeper runs out of steps
+     */
+    public Result run() {
+        TeamMap team = new TeamMap(height, width);
+        List<KeeperAI> members = new ArrayList<>(keepers);
+        for (int i = 0; i < keepers; i++)
+            members.add(sharedMap ? new KeeperAI(height, width, DStarLite::new, team) : new KeeperAI(height, width, false, DStarLite::new));
+        SharedMaze maze = Maze.builder().height(height).width(width).keys(keys).seed(seed).buildShared(members);
+
+        if (inTurns) return playInTurns(maze);
+
+        List<Callable<Void>> players = new ArrayList<>(keepers);
+        for (SharedMaze.View view : maze.getViews()) {
+            players.add(() -> {
+                while (!view.isMazeCompleted() && view.getSteps() < maxSteps) view.makeKeeperAct();
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(keepers);
+        long start = System.nanoTime();
+        try {
+            for (Future<Void> player : pool.invokeAll(players)) player.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the keepers play", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A keeper failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return result(maze, System.nanoTime() - start);
+    }
+
+    private Result playInTurns(SharedMaze maze) {
+        long start = System.nanoTime();
+        boolean playing = true;
+        while (playing && !maze.isMazeCompleted()) {
+            playing = false;
+            for (SharedMaze.View view : maze.getViews()) {
+                if (maze.isMazeCompleted() || view.getSteps() >= maxSteps) continue;
+                view.makeKeeperAct();
+                playing = true;
+            }
+        }
+        return result(maze, System.nanoTime() - start);
+    }
+
+    /**
+     * Called once the keepers have stopped, so their steps are final
+     */
+    private static Result result(SharedMaze maze, long elapsed) {
+        long longest = 0;
+        for (SharedMaze.View view : maze.getViews()) longest = Math.max(longest, view.getSteps());
+        long total = maze.getTotalSteps();
+        if (maze.isMazeCompleted() && KeeperMetrics.ENABLED) {
+            KeeperMetrics.EPISODES.increment();
+            KeeperMetrics.EPISODE_STEPS.record(total);
+        }
+        return new Result(maze.isMazeCompleted(), longest, total, elapsed);
+    }
+
+    /**
+     * Outcome of a run
+     */
+    public static class Result {
+
+        private final boolean completed;
+        private final long longestSteps;
+        private final long totalSteps;
+        private final long elapsedNanos;
+
+        Result(boolean completed, long longestSteps, long totalSteps, long elapsedNanos) {
+            this.completed = completed;
+            this.longestSteps = longestSteps;
+            this.totalSteps = totalSteps;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Steps of the keeper acting the most, the time the team took in steps
+         */
+        public long getLongestSteps() {
+            return longestSteps;
+        }
+
+        /**
+         * Steps of every keeper added up
+         */
+        public long getTotalSteps() {
+            return totalSteps;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Steps of every keeper per second of wall clock time
+         */
+        public double getStepsPerSecond() {
+            return elapsedNanos == 0 ? 0 : totalSteps * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("completed=%s longestSteps=%d totalSteps=%d elapsed=%.1fms steps/s=%.0f",
+                    completed, longestSteps, totalSteps, elapsedNanos / 1e6, getStepsPerSecond());
+        }
+    }
+
+    public static void main(String[] args) {
+        TeamRunner runner = new TeamRunner();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("Expected name=value: " + arg);
+            switch (option[0]) {
+                case "size":
+                    runner.size(Integer.parseInt(option[1]), Integer.parseInt(option[1]));
+                    break;
+                case "keys":
+                    runner.keys(Integer.parseInt(option[1]));
+                    break;
+                case "seed":
+                    runner.seed(Long.parseLong(option[1]));
+                    break;
+                case "maxSteps":
+                    runner.maxSteps(Integer.parseInt(option[1]));
+                    break;
+                case "keepers":
+                    runner.keepers(Integer.parseInt(option[1]));
+                    break;
+                case "shared":
+                    runner.sharedMap(Boolean.parseBoolean(option[1]));
+                    break;
+                case "inTurns":
+                    runner.inTurns(Boolean.parseBoolean(option[1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        System.out.println(runner.run());
+        if (KeeperMetrics.ENABLED) System.out.println(KeeperMetrics.report());
+    }
+
+}
@@ -1,13 +1,10 @@
 package tws.keeper.solution;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.EnumSet;
+import java.util.Arrays;
 
 import tws.keeper.model.Action;
 import tws.keeper.model.Position;
-import tws.keeper.solution.MazeExplorer.CellState;
 
 /**
  * 
@@ -15,30 +12,115 @@ import tws.keeper.solution.MazeExplorer.CellState;
  * 
  * <p>A* algorithm implementation to find the best path form one Cell 
  * of the Maze to another target Cell.
+ * 
+ * <p>Cells are identified by their index (vertical*width+horizontal) in the map.
+ * The open set is an indexed binary heap with decrease-key, and the cost (g) and
+ * parent of every cell are kept in flat arrays, reused between searches. Arrays
+ * are stamped with the search number, so they do not need to be cleared. 
+ * The heuristic function (h) is the Manhattan distance to the target unless 
+ * another Heuristic is given, ties in the total cost (f) are broken in favor of 
+ * the lowest h.
+ * 
+ * <p>Cells of the last path found are stamped with the path number, so a wall
+ * marked in the map tells in O(1) whether it blocks the path, and needUpdate
+ * does not walk the path.
+ * 
+ * <p>With a weight w above 1 the heuristic is multiplied by w (f = g + w*h): the
+ * search goes straight to the target expanding fewer cells, and the path found
+ * is at most w times longer than the shortest one.
  */
-public class A_Star {
+public class A_Star implements PathFinder, MazeExplorer.MapListener {
+	private static final int WEIGHT_SCALE = 16; //Weights are kept in sixteenths
+	
 	private MazeExplorer map;
-	private Position target;
-	private ArrayList<Position> pathPositions = null;
+	private final int weight;
+	private final Heuristic heuristic;
+	
+	private int width = 0;
+	private IndexedHeap openSet = null;
+	private int[] gScore;
+	private int[] parent;
+	private int[] visited; //Search stamp when the cell g score was set
+	private int[] closed;  //Search stamp when the cell was expanded
+	private int search = 0;
+	private int[] onPath; //Path stamp of the cells in the last path
+	private int pathStamp = 0;
+	private boolean solved = false;
+	private boolean pathBlocked = false;
+	private int expanded = 0;
+	private long memory = 0;
 	
 	/**
 	 * 
-	 * @param explorer
+	 * @param explorer Map to search. Changes in this map are tracked.
 	 */
 	public A_Star(MazeExplorer explorer){
+		this(explorer, 1);
+	}
+	
+	/**
+	 * 
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 * @param weight Factor of the heuristic, at least 1. Bound of the path length
+	 * over the shortest one.
+	 */
+	public A_Star(MazeExplorer explorer, double weight){
+		this(explorer, weight, Heuristic.MANHATTAN);
+	}
+	
+	/**
+	 * 
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 * @param weight Factor of the heuristic, at least 1. Bound of the path length
+	 * over the shortest one.
+	 * @param heuristic Estimate of the distance to the target.
+	 */
+	public A_Star(MazeExplorer explorer, double weight, Heuristic heuristic){
+		if(!(weight >= 1))
+			throw new IllegalArgumentException("Weight must be at least 1: " + weight);
 		this.map = explorer;
+		this.weight = (int)Math.round(weight*WEIGHT_SCALE);
+		this.heuristic = heuristic;
+		explorer.addMapListener(this);
 	}
 	
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * 
+	 * @return Bytes of the search state and of the heuristic.
+	 */
+	@Override
+	public long getPeakMemory() {
+		return memory + heuristic.getMemory();
+	}
+
+	@Override
+	public int getOpenSetPeak() {
+		return openSet == null? 0 : openSet.peak();
+	}
+	
+	/**
+	 * 
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
 	public boolean needUpdate() {
-		if(pathPositions==null)
-			return true;
-		
-		for(Position pos:pathPositions) {
-			if(!map.canVisit(pos))
-				return true;
-		}
-		
-		return false;
+		return !solved || pathBlocked;
+	}
+	
+	@Override
+	public void wallMarked(int y, int x) {
+		if(solved && onPath[y*width + x] == pathStamp)
+			pathBlocked = true;
+	}
+	
+	@Override
+	public void mapReplaced() {
+		solved = false;
 	}
 	
 	
@@ -47,164 +129,138 @@ public class A_Star {
 	 * @param start Start position.
 	 * @return Actions the Keeper should take to reach the target.
 	 */
+	@Override
 	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException{
-		this.target = target;
+		int height = map.getHeight();
+		
+		if(!isInside(start, height) || !map.canVisit(target))
+			throw new UnsolvableProblemException();
 		
-		ArrayList<Node> closedSet = new ArrayList<Node>();
-		ArrayList<Node> openSet = new ArrayList<Node>();
+		prepare(map.getWidth(), height);
+		expanded = 0;
+		solved = false;
 		
-		openSet.add(new Node(start));
+		int targetX = target.getHorizontal();
+		int targetY = target.getVertical();
+		int startCell = start.getVertical()*width + start.getHorizontal();
+		int targetCell = targetY*width + targetX;
+		heuristic.prepare(targetX, targetY);
 		
-		int i=0;
+		setScore(startCell, 0, -1);
+		openSet.push(startCell, priority(0, start.getHorizontal(), start.getVertical(), targetX, targetY));
 		
 		while (!openSet.isEmpty()) {
-			Node current = openSet.get(0);
-			if(current.position.equals(target)) {
-				pathPositions = new ArrayList<Position>();
-				return current.getPath(pathPositions);
-			}
+			int current = openSet.pop();
+			if(current == targetCell)
+				return getPath(startCell, targetCell);
 			
-			openSet.remove(current);
-			closedSet.add(current);
+			closed[current] = search;
+			expanded++;
 			
-			ArrayList<Node> neighbors = current.getNeighbors();
+			int x = current % width;
+			int y = current / width;
+			int g = gScore[current] + 1;
 			
-			for(Node neighbor:neighbors) {
-				if(!closedSet.contains(neighbor)) {
-					if(!openSet.contains(neighbor)) {
-						openSet.add(neighbor);
-					}
-					else {
-						Node nodeInOpen = openSet.get(openSet.indexOf(neighbor));
-						if(nodeInOpen.compareTo(neighbor)>0) {
-							openSet.remove(nodeInOpen);
-							openSet.add(neighbor);
-						}
-					}
-				}
-			}
-			
-			Collections.sort(openSet);
+			expand(current, x, y-1, g, targetX, targetY);
+			expand(current, x, y+1, g, targetX, targetY);
+			expand(current, x-1, y, g, targetX, targetY);
+			expand(current, x+1, y, g, targetX, targetY);
 		}
 		
 		throw new UnsolvableProblemException();
 	}
 	
 	/**
-	 * Nodes for the A* algorithm. Contains the evaluations of the heuristic function(h), 
-	 * cost function(g) and total cost(f). The h function is defined using the Manhattan
-	 * distance between the Node and the target. The g function is defined by the total
-	 * steps necessaries to reach the Node from the start. 
-	 * Nodes natural order is defined by their f function. Equal method is defined in a
-	 * way that two Nodes are equals if they have the same position.
-	 * Note that this natural order in inconsistent with equals. 
-	 * @author Ismael Yeste Espin
-	 *
+	 * Relax the edge from the current cell to the neighbor at (x, y).
 	 */
-	private class Node implements Comparable<Node>{
-		Position position;
-		int h; //Heuristic
-		int g; //Cost
-		int f; //h+g
-		Node parent = null;
+	private void expand(int current, int x, int y, int g, int targetX, int targetY) {
+		if(!map.canVisit(y, x))
+			return;
 		
+		int neighbor = y*width + x;
+		if(closed[neighbor] == search)
+			return;
 		
-		/**
-		 * Create a Node without parent.
-		 * @param pos Position of the Node.
-		 */
-		Node(Position pos){
-			position = pos;
-			h = Math.abs(target.getHorizontal()-pos.getHorizontal())+ //Manhattan distance
-				Math.abs(target.getVertical()-pos.getVertical());
-			g = 0;
-			f = h; 
-			
+		if(visited[neighbor] != search || g < gScore[neighbor]) {
+			setScore(neighbor, g, current);
+			openSet.push(neighbor, priority(g, x, y, targetX, targetY));
 		}
+	}
+	
+	private void setScore(int cell, int g, int from) {
+		gScore[cell] = g;
+		parent[cell] = from;
+		visited[cell] = search;
+	}
+	
+	/**
+	 * Open set priority. The f function (scaled by WEIGHT_SCALE) is the primary
+	 * key and the h function breaks ties.
+	 */
+	private long priority(int g, int x, int y, int targetX, int targetY) {
+		int h = heuristic.estimate(x, y, targetX, targetY);
+		return ((long)g*WEIGHT_SCALE + (long)h*weight) << 24 | h;
+	}
+	
+	private boolean isInside(Position pos, int height) {
+		return pos.getHorizontal()>=0 && pos.getVertical()>=0 
+				&& pos.getHorizontal()<map.getWidth() && pos.getVertical()<height;
+	}
+	
+	/**
+	 * Allocate search arrays if the map size has changed and start a new search stamp.
+	 */
+	private void prepare(int mapWidth, int mapHeight) {
+		int size = mapWidth*mapHeight;
 		
-		/**
-		 * Create a child Node from a given parent. 
-		 * @param pos Position of the child Node.
-		 * @param parent Parent Node.
-		 */
-		Node(Position pos, Node parent){
-			this(pos);
-			g = parent.g+1;
-			f += g;
-			this.parent = parent;
+		if(openSet == null || openSet.capacity() != size || width != mapWidth) {
+			width = mapWidth;
+			openSet = new IndexedHeap(size);
+			gScore = new int[size];
+			parent = new int[size];
+			visited = new int[size];
+			closed = new int[size];
+			onPath = new int[size];
+			search = 0;
+			memory = (long)size*(5*Integer.BYTES + IndexedHeap.BYTES_PER_ITEM);
 		}
+		else
+			openSet.clear();
 		
-		/**
-		 * Instantiate every neighbors nodes (top, bottom, left and right) of the Node. 
-		 * @return Array containing neighbor nodes.
-		 */
-		ArrayList<Node> getNeighbors() {
-			ArrayList<Node> neighbors = new ArrayList<Node>(); 
-			int x = position.getHorizontal();
-			int y = position.getVertical();
-			Position positions[] = {
-					new Position(y-1, x),
-					new Position(y+1, x),
-					new Position(y, x-1),
-					new Position(y, x+1)
-			};
-			
-			for(Position position:positions) {
-				if(map.canVisit(position))
-					neighbors.add(new Node(position, this));
-			}
-			
-			return neighbors;
-		}
+		search++;
+	}
+	
+	/**
+	 * Find the necessary steps to reach the target by following 
+	 * the parent cells back to the start.
+	 * 
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath(int startCell, int targetCell) {
+		int length = gScore[targetCell];
+		Action[] actions = new Action[length];
+		pathStamp++;
+		pathBlocked = false;
+		solved = true;
 		
-		/**
-		 * Find the necessary steps to reach the Node 
-		 * by exploring parent nodes recursively.
-		 * 
-		 * @return Array containing every Action to reach the Node in the right order.
-		 */
-		ArrayList<Action> getPath(ArrayList<Position> positions) {
-			ArrayList<Action> path = new ArrayList<Action>();
-			Node current = this;
+		for(int cell = targetCell; cell != startCell; cell = parent[cell]) {
+			int from = parent[cell];
+			int dx = cell % width - from % width;
+			int dy = cell / width - from / width;
 			
-			while(current.parent != null) {
-				int dx = current.position.getHorizontal() - current.parent.position.getHorizontal();
-				int dy = current.position.getVertical() - current.parent.position.getVertical();
-				
-				path.add(0,
-						 dx>0? Action.GO_RIGHT
-						:dx<0? Action.GO_LEFT
-						:dy>0? Action.GO_DOWN
-						:dy<0? Action.GO_UP
-						:Action.DO_NOTHING
-						);
-				
-				positions.add(0, current.position);
-				
-				current = current.parent;
-			}
+			actions[--length] = dx>0? Action.GO_RIGHT
+					:dx<0? Action.GO_LEFT
+					:dy>0? Action.GO_DOWN
+					:Action.GO_UP;
 			
-			return path;
-		}
-		
-		@Override
-		public boolean equals(Object obj) {
-			return obj instanceof Node && ((Node)obj).position.equals(position);
+			onPath[cell] = pathStamp;
 		}
 		
-		@Override
-		public int hashCode() {
-			return position.getHorizontal()<<16 | position.getVertical();
-		}
-
-		@Override
-		public int compareTo(Node node) {
-			return f - node.f;
-		}
+		return new ArrayList<Action>(Arrays.asList(actions));
 	}
 	
 	public static class UnsolvableProblemException extends Exception{
 		private static final long serialVersionUID = 1L;
 		
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>Bidirectional A*: one search from the keeper to the target and another one
+ * from the target to the keeper. Every step expands the side with the smallest
+ * open set.
+ *
+ * <p>Both sides use the average of the distances to both ends as heuristic: the
+ * forward search (h_t - h_s)/2 and the backward one (h_s - h_t)/2, where h_t and
+ * h_s are the Manhattan distances to the target and to the keeper. Their sum is
+ * always 0, so the searches behave as a bidirectional Dijkstra over reduced costs:
+ * when a cell reached by one side is reached by the other one, the sum of both
+ * costs is a path and the best one (mu) is kept, and no path not found yet can be
+ * shorter than the sum of the lowest keys of both open sets. The search stops as
+ * soon as that sum is not lower than mu. With the Manhattan distance to its own
+ * goal on each side, the search could only stop once one of the lowest keys is
+ * not lower than mu, expanding more cells than A*.
+ *
+ * <p>Search state is kept in flat arrays per side, as in A_Star, so it needs twice
+ * the memory of a single search. Cells of the last path are stamped as in A_Star,
+ * so needUpdate does not walk the path.
+ */
+public class BidirectionalA_Star implements PathFinder, MazeExplorer.MapListener {
+	private static final int FORWARD = 0;
+	private static final int BACKWARD = 1;
+
+	private MazeExplorer map;
+
+	private int width = 0;
+	private IndexedHeap[] openSet = new IndexedHeap[2];
+	private int[][] gScore = new int[2][];
+	private int[][] parent = new int[2][];
+	private int[][] visited = new int[2][]; //Search stamp when the cell g score was set
+	private int[][] closed = new int[2][];  //Search stamp when the cell was expanded
+	private int[] goalX = new int[2];
+	private int[] goalY = new int[2];
+	private int search = 0;
+	private int best; //Shortest path found (mu)
+	private int meeting; //Cell of the shortest path reached by both sides
+	private int[] onPath; //Path stamp of the cells in the last path
+	private int pathStamp = 0;
+	private boolean solved = false;
+	private boolean pathBlocked = false;
+	private int expanded = 0;
+	private long memory = 0;
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 */
+	public BidirectionalA_Star(MazeExplorer explorer) {
+		this.map = explorer;
+		explorer.addMapListener(this);
+	}
+
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+
+	@Override
+	public long getPeakMemory() {
+		return memory;
+	}
+
+	/**
+	 * 
+	 * @return Peaks of both open sets added up.
+	 */
+	@Override
+	public int getOpenSetPeak() {
+		return openSet[FORWARD] == null? 0 : openSet[FORWARD].peak() + openSet[BACKWARD].peak();
+	}
+
+	/**
+	 *
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
+	public boolean needUpdate() {
+		return !solved || pathBlocked;
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		if(solved && onPath[y*width + x] == pathStamp)
+			pathBlocked = true;
+	}
+
+	@Override
+	public void mapReplaced() {
+		solved = false;
+	}
+
+	/**
+	 * Runs both searches until the shortest path is found.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	@Override
+	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException {
+		int height = map.getHeight();
+		int x = start.getHorizontal();
+		int y = start.getVertical();
+
+		if(x<0 || y<0 || x>=map.getWidth() || y>=height || !map.canVisit(target))
+			throw new UnsolvableProblemException();
+
+		prepare(map.getWidth(), height);
+		expanded = 0;
+		solved = false;
+
+		int startCell = y*width + x;
+		int targetCell = target.getVertical()*width + target.getHorizontal();
+		goalX[FORWARD] = target.getHorizontal();
+		goalY[FORWARD] = target.getVertical();
+		goalX[BACKWARD] = x;
+		goalY[BACKWARD] = y;
+		best = Integer.MAX_VALUE;
+		meeting = -1;
+
+		relax(FORWARD, startCell, 0, -1);
+		relax(BACKWARD, targetCell, 0, -1);
+
+		while(!openSet[FORWARD].isEmpty() && !openSet[BACKWARD].isEmpty()) {
+			long lowest = (openSet[FORWARD].peekPriority() >> 32) + (openSet[BACKWARD].peekPriority() >> 32);
+			if(2L*best <= lowest)
+				break;
+
+			int side = openSet[FORWARD].size() <= openSet[BACKWARD].size()? FORWARD : BACKWARD;
+			int current = openSet[side].pop();
+			closed[side][current] = search;
+			expanded++;
+
+			int cx = current % width;
+			int cy = current / width;
+			int g = gScore[side][current] + 1;
+
+			expand(side, current, cx, cy-1, g);
+			expand(side, current, cx, cy+1, g);
+			expand(side, current, cx-1, cy, g);
+			expand(side, current, cx+1, cy, g);
+		}
+
+		if(meeting < 0)
+			throw new UnsolvableProblemException();
+
+		return getPath();
+	}
+
+	/**
+	 * Relax the edge from the current cell to the neighbor at (x, y).
+	 */
+	private void expand(int side, int current, int x, int y, int g) {
+		if(!map.canVisit(y, x))
+			return;
+
+		int neighbor = y*width + x;
+		if(closed[side][neighbor] != search)
+			relax(side, neighbor, g, current);
+	}
+
+	private void relax(int side, int cell, int g, int from) {
+		if(visited[side][cell] == search && g >= gScore[side][cell])
+			return;
+
+		gScore[side][cell] = g;
+		parent[side][cell] = from;
+		visited[side][cell] = search;
+
+		int other = side^1;
+		if(visited[other][cell] == search && g + gScore[other][cell] < best) {
+			best = g + gScore[other][cell];
+			meeting = cell;
+		}
+
+		int x = cell % width;
+		int y = cell / width;
+		int h = Math.abs(goalX[side]-x) + Math.abs(goalY[side]-y);
+		int away = Math.abs(goalX[other]-x) + Math.abs(goalY[other]-y);
+		openSet[side].push(cell, ((long)(2*g + h - away) << 32) | h); //Twice g plus the average heuristic
+	}
+
+	/**
+	 * Allocate search arrays if the map size has changed and start a new search stamp.
+	 */
+	private void prepare(int mapWidth, int mapHeight) {
+		int size = mapWidth*mapHeight;
+
+		if(openSet[FORWARD] == null || openSet[FORWARD].capacity() != size || width != mapWidth) {
+			width = mapWidth;
+			for(int side=FORWARD;side<=BACKWARD;side++) {
+				openSet[side] = new IndexedHeap(size);
+				gScore[side] = new int[size];
+				parent[side] = new int[size];
+				visited[side] = new int[size];
+				closed[side] = new int[size];
+			}
+			onPath = new int[size];
+			search = 0;
+			memory = 2L*size*(4*Integer.BYTES + IndexedHeap.BYTES_PER_ITEM) + (long)size*Integer.BYTES;
+		}
+		else {
+			openSet[FORWARD].clear();
+			openSet[BACKWARD].clear();
+		}
+
+		search++;
+	}
+
+	/**
+	 * Join the parents of the meeting cell back to the start, and
+	 * forward to the target.
+	 *
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath() {
+		ArrayList<Integer> cells = new ArrayList<Integer>(best+1);
+		for(int cell=meeting;cell!=-1;cell=parent[FORWARD][cell])
+			cells.add(cell);
+		Collections.reverse(cells);
+		for(int cell=parent[BACKWARD][meeting];cell!=-1;cell=parent[BACKWARD][cell])
+			cells.add(cell);
+
+		ArrayList<Action> path = new ArrayList<Action>(best);
+		pathStamp++;
+		pathBlocked = false;
+		solved = true;
+
+		for(int i=1;i<cells.size();i++) {
+			int from = cells.get(i-1);
+			int cell = cells.get(i);
+			int dx = cell % width - from % width;
+			int dy = cell / width - from / width;
+
+			path.add(dx>0? Action.GO_RIGHT
+					:dx<0? Action.GO_LEFT
+					:dy>0? Action.GO_DOWN
+					:Action.GO_UP);
+
+			onPath[cell] = pathStamp;
+		}
+
+		return path;
+	}
+}
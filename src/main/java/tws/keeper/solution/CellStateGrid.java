@@ -0,0 +1,158 @@
+package tws.keeper.solution;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+
+import tws.keeper.solution.MazeExplorer.CellState;
+
+/**
+ *
+ * <p>Grid of cell states used by the MazeExplorer. Each cell keeps its set of
+ * CellState flags as the bits of a single byte (bit n is the CellState with
+ * ordinal n), and cells are stored row by row in a flat buffer, so the cell
+ * (vertical, horizontal) has index vertical*width+horizontal.
+ *
+ * <p>The buffer wraps a heap array, or is a direct buffer for maps too big for
+ * the heap, not traced by the garbage collector. A byte per cell is kept either
+ * way, as the states of a cell are combined.
+ */
+public class CellStateGrid {
+	private final ByteBuffer cells;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Create a grid with every cell set to the given state.
+	 * @param height Number of rows.
+	 * @param width Number of columns.
+	 * @param initial Initial state of every cell.
+	 */
+	public CellStateGrid(int height, int width, CellState initial) {
+		this(height, width, initial, false);
+	}
+
+	/**
+	 * Create a grid with every cell set to the given state.
+	 * @param height Number of rows.
+	 * @param width Number of columns.
+	 * @param initial Initial state of every cell.
+	 * @param offHeap True to keep the cells in a direct buffer.
+	 */
+	public CellStateGrid(int height, int width, CellState initial, boolean offHeap) {
+		this.width = width;
+		this.height = height;
+		cells = offHeap? ByteBuffer.allocateDirect(width*height) : ByteBuffer.wrap(new byte[width*height]);
+		byte flags = mask(initial);
+		if(flags != 0)
+			for(int i=0;i<width*height;i++)
+				cells.put(i, flags);
+	}
+
+	/**
+	 * Create a grid from a map of EnumSets. Null cells have no state.
+	 * @param map Map to copy.
+	 */
+	public CellStateGrid(EnumSet<CellState>[][] map) {
+		this(map.length, map[0].length, null);
+
+		for(int y=0;y<height;y++) {
+			for(int x=0;x<width;x++) {
+				byte flags = 0;
+				if(map[y][x] != null)
+					for(CellState state:map[y][x])
+						flags |= mask(state);
+				cells.put(y*width+x, flags);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param state Cell state, null for none.
+	 * @return Bit of the state in a cell.
+	 */
+	public static byte mask(CellState state) {
+		return state == null? 0 : (byte)(1 << state.ordinal());
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 *
+	 * @return True if the cells are in a direct buffer.
+	 */
+	public boolean isOffHeap() {
+		return cells.isDirect();
+	}
+
+	/**
+	 *
+	 * @param y Vertical coordinate.
+	 * @param x Horizontal coordinate.
+	 * @return True if the cell is inside the grid.
+	 */
+	public boolean isInside(int y, int x) {
+		return x>=0 && y>=0 && x<width && y<height;
+	}
+
+	/**
+	 *
+	 * @param index Cell index.
+	 * @return Bits of every state of the cell.
+	 */
+	public byte get(int index) {
+		return cells.get(index);
+	}
+
+	/**
+	 * Replace every state of a cell.
+	 * @param index Cell index.
+	 * @param flags Bits of the new states.
+	 */
+	public void set(int index, byte flags) {
+		cells.put(index, flags);
+	}
+
+	/**
+	 *
+	 * @param index Cell index.
+	 * @param state State to evaluate.
+	 * @return True if the cell has the state.
+	 */
+	public boolean has(int index, CellState state) {
+		return (cells.get(index) & mask(state)) != 0;
+	}
+
+	/**
+	 * Add a state to a cell.
+	 */
+	public void add(int index, CellState state) {
+		cells.put(index, (byte)(cells.get(index) | mask(state)));
+	}
+
+	/**
+	 * Remove a state from a cell.
+	 */
+	public void remove(int index, CellState state) {
+		cells.put(index, (byte)(cells.get(index) & ~mask(state)));
+	}
+
+	/**
+	 *
+	 * @param index Cell index.
+	 * @return States of the cell as a new EnumSet.
+	 */
+	public EnumSet<CellState> states(int index) {
+		EnumSet<CellState> states = EnumSet.noneOf(CellState.class);
+		for(CellState state:CellState.values())
+			if(has(index, state))
+				states.add(state);
+		return states;
+	}
+}
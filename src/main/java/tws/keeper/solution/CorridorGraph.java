@@ -0,0 +1,393 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>A* over the graph of junctions and dead ends of the map, for mazes made of
+ * one cell wide corridors.
+ *
+ * <p>Open cells with exactly two open neighbors are corridor cells, any other open
+ * cell is a node of the graph. An edge follows a corridor from a node to the next
+ * one and its cost is the length of the corridor, so the search expands one node
+ * per junction instead of one per cell. Edges are found by walking the corridor
+ * the first time a node is expanded in a direction, and kept for later searches
+ * in flat arrays (one entry per cell and direction).
+ *
+ * <p>The graph listens to the MazeExplorer: when a wall is marked the number of
+ * open neighbors of the cells around it changes, and only the edges of those cells
+ * and of the nodes at the ends of the corridors through them are dropped. The
+ * keeper and the target are handled as nodes by the search even in the middle of
+ * a corridor. Unknown cells are open, so an unexplored area is a block of junctions
+ * and the search only saves work in the known part of the map.
+ */
+public class CorridorGraph implements PathFinder, MazeExplorer.MapListener {
+	private static final int UNKNOWN = -1; //Edge not walked yet
+	private static final int[] DX = {0, 0, -1, 1};
+	private static final int[] DY = {-1, 1, 0, 0};
+	private static final Action[] MOVES = {Action.GO_UP, Action.GO_DOWN, Action.GO_LEFT, Action.GO_RIGHT};
+
+	private MazeExplorer map;
+	private int width;
+	private int height;
+	private boolean built = false;
+	private byte[] degree; //Open neighbors of every cell
+	private int[] edgeEnd; //Node at the end of the corridor leaving cell*4+direction
+	private int[] edgeLength;
+	private int walkLength; //Length and last direction of the last walk
+	private int walkDirection;
+
+	private IndexedHeap openSet = null;
+	private int[] gScore;
+	private int[] parent;
+	private byte[] parentDirection; //Direction taken from the parent node
+	private int[] visited; //Search stamp when the node g score was set
+	private int[] closed;  //Search stamp when the node was expanded
+	private int search = 0;
+	private int expanded = 0;
+	private long memory = 0;
+	private int[] targetEnds = new int[2]; //Nodes at the ends of the corridor of the target
+	private int[] targetDirections = new int[2];
+	private int[] targetLengths = new int[2];
+	private int targetEndCount = 0;
+
+	private boolean solved = false;
+	private int[] onPath; //Path stamp of the cells in the current path
+	private int pathStamp = 0;
+	private boolean pathBlocked = false;
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 */
+	public CorridorGraph(MazeExplorer explorer) {
+		this.map = explorer;
+		explorer.addMapListener(this);
+	}
+
+	/**
+	 *
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
+	public boolean needUpdate() {
+		return !solved || pathBlocked;
+	}
+
+	/**
+	 *
+	 * @return Nodes expanded by the last search.
+	 */
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 *
+	 * @return Bytes of the graph and of the search state, both kept between searches.
+	 */
+	@Override
+	public long getPeakMemory() {
+		return memory;
+	}
+
+	@Override
+	public int getOpenSetPeak() {
+		return openSet == null? 0 : openSet.peak();
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		if(!built)
+			return;
+
+		int cell = y*width + x;
+		if(onPath[cell] == pathStamp)
+			pathBlocked = true;
+
+		for(int dir=0;dir<4;dir++)
+			if(isInside(cell, dir))
+				degree[step(cell, dir)]--;
+
+		forget(cell);
+		for(int dir=0;dir<4;dir++) {
+			if(!isOpen(cell, dir))
+				continue;
+
+			//Nodes reached from the neighbor had an edge through it or through the wall
+			int neighbor = step(cell, dir);
+			forget(neighbor);
+			for(int next=0;next<4;next++) {
+				if(isOpen(neighbor, next)) {
+					int end = walk(neighbor, next, -1);
+					edgeEnd[end*4 + (walkDirection^1)] = UNKNOWN;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void mapReplaced() {
+		built = false;
+		solved = false;
+	}
+
+	/**
+	 * Runs A* on the corridor graph, finding the best path to reach the target.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	@Override
+	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException {
+		int x = start.getHorizontal();
+		int y = start.getVertical();
+
+		if(x<0 || y<0 || x>=map.getWidth() || y>=map.getHeight() || !map.canVisit(target))
+			throw new UnsolvableProblemException();
+
+		prepare(map.getWidth(), map.getHeight());
+		solved = false;
+		expanded = 0;
+
+		int startCell = y*width + x;
+		int targetCell = target.getVertical()*width + target.getHorizontal();
+		int targetX = target.getHorizontal();
+		int targetY = target.getVertical();
+		findTargetEnds(targetCell);
+
+		setScore(startCell, 0, -1, 0);
+		openSet.push(startCell, priority(0, startCell, targetX, targetY));
+
+		while(!openSet.isEmpty()) {
+			int current = openSet.pop();
+			if(current == targetCell)
+				return getPath(startCell, targetCell);
+
+			closed[current] = search;
+			expanded++;
+			expand(current, current == startCell, targetCell, targetX, targetY);
+		}
+
+		throw new UnsolvableProblemException();
+	}
+
+	/**
+	 * Relax the edges of every open direction of a node.
+	 */
+	private void expand(int current, boolean isStart, int targetCell, int targetX, int targetY) {
+		int g = gScore[current];
+
+		for(int dir=0;dir<4;dir++) {
+			if(!isOpen(current, dir))
+				continue;
+
+			int end;
+			int length;
+			if(isStart && (degree[current] == 2 || !map.canVisit(current / width, current % width))) {
+				//Not a node, the walk is not kept and stops at the target
+				end = walk(current, dir, targetCell);
+				length = walkLength;
+			}
+			else {
+				int slot = current*4 + dir;
+				if(edgeEnd[slot] == UNKNOWN) {
+					edgeEnd[slot] = walk(current, dir, -1);
+					edgeLength[slot] = walkLength;
+				}
+				end = edgeEnd[slot];
+				length = edgeLength[slot];
+			}
+			relax(current, dir, end, g + length, targetX, targetY);
+
+			for(int i=0;i<targetEndCount;i++)
+				if(targetEnds[i] == current && targetDirections[i] == dir)
+					relax(current, dir, targetCell, g + targetLengths[i], targetX, targetY);
+		}
+	}
+
+	private void relax(int from, int dir, int cell, int g, int targetX, int targetY) {
+		if(closed[cell] == search)
+			return;
+
+		if(visited[cell] != search || g < gScore[cell]) {
+			setScore(cell, g, from, dir);
+			openSet.push(cell, priority(g, cell, targetX, targetY));
+		}
+	}
+
+	private void setScore(int cell, int g, int from, int dir) {
+		gScore[cell] = g;
+		parent[cell] = from;
+		parentDirection[cell] = (byte)dir;
+		visited[cell] = search;
+	}
+
+	/**
+	 * Open set priority. The f function is the primary key and the h function
+	 * (Manhattan distance, never longer than a corridor) breaks ties.
+	 */
+	private long priority(int g, int cell, int targetX, int targetY) {
+		int h = Math.abs(targetX - cell % width) + Math.abs(targetY - cell / width);
+		return ((long)(g+h) << 32) | h;
+	}
+
+	/**
+	 * A target in the middle of a corridor is reached from the nodes at both
+	 * ends, through edges which would otherwise walk past it.
+	 */
+	private void findTargetEnds(int targetCell) {
+		targetEndCount = 0;
+		if(degree[targetCell] != 2)
+			return;
+
+		for(int dir=0;dir<4;dir++) {
+			if(isOpen(targetCell, dir)) {
+				int end = walk(targetCell, dir, -1);
+				if(end == targetCell)
+					continue; //Corridor closed on itself, no node on it
+				targetEnds[targetEndCount] = end;
+				targetDirections[targetEndCount] = walkDirection^1;
+				targetLengths[targetEndCount] = walkLength;
+				targetEndCount++;
+			}
+		}
+	}
+
+	/**
+	 * Follow a corridor until a node, the stop cell or the cell it started from.
+	 * @return Cell where the walk ends. Its length and last direction are kept
+	 * in walkLength and walkDirection.
+	 */
+	private int walk(int from, int dir, int stop) {
+		int cell = step(from, dir);
+		int length = 1;
+
+		while(cell != stop && cell != from && degree[cell] == 2) {
+			dir = exit(cell, dir);
+			cell = step(cell, dir);
+			length++;
+		}
+
+		walkLength = length;
+		walkDirection = dir;
+		return cell;
+	}
+
+	/**
+	 *
+	 * @return Open direction of a corridor cell other than the one back.
+	 */
+	private int exit(int cell, int arrival) {
+		int back = arrival^1;
+		for(int dir=0;dir<4;dir++)
+			if(dir != back && isOpen(cell, dir))
+				return dir;
+		return back;
+	}
+
+	private int step(int cell, int dir) {
+		return cell + DY[dir]*width + DX[dir];
+	}
+
+	private boolean isInside(int cell, int dir) {
+		int x = cell % width + DX[dir];
+		int y = cell / width + DY[dir];
+		return x>=0 && y>=0 && x<width && y<height;
+	}
+
+	private boolean isOpen(int cell, int dir) {
+		return map.canVisit(cell / width + DY[dir], cell % width + DX[dir]);
+	}
+
+	private void forget(int cell) {
+		Arrays.fill(edgeEnd, cell*4, cell*4 + 4, UNKNOWN);
+	}
+
+	/**
+	 * Allocate the arrays if the map size has changed, count the open neighbors
+	 * of every cell if the graph is not built, and start a new search stamp.
+	 */
+	private void prepare(int mapWidth, int mapHeight) {
+		int size = mapWidth*mapHeight;
+
+		if(openSet == null || openSet.capacity() != size || width != mapWidth) {
+			width = mapWidth;
+			height = mapHeight;
+			degree = new byte[size];
+			edgeEnd = new int[size*4];
+			edgeLength = new int[size*4];
+			openSet = new IndexedHeap(size);
+			gScore = new int[size];
+			parent = new int[size];
+			parentDirection = new byte[size];
+			visited = new int[size];
+			closed = new int[size];
+			onPath = new int[size];
+			search = 0;
+			built = false;
+			memory = (long)size*(2 + 13*Integer.BYTES + IndexedHeap.BYTES_PER_ITEM);
+		}
+		else
+			openSet.clear();
+
+		if(!built) {
+			for(int cell=0;cell<size;cell++) {
+				int open = 0;
+				for(int dir=0;dir<4;dir++)
+					if(isOpen(cell, dir))
+						open++;
+				degree[cell] = (byte)open;
+			}
+			Arrays.fill(edgeEnd, UNKNOWN);
+			built = true;
+		}
+
+		search++;
+	}
+
+	/**
+	 * Walk again the corridors between the nodes of the path, from the start.
+	 *
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath(int startCell, int targetCell) throws UnsolvableProblemException {
+		int length = gScore[targetCell];
+		ArrayList<Action> path = new ArrayList<Action>(length);
+
+		int nodes = 0;
+		for(int cell=targetCell;cell!=startCell;cell=parent[cell])
+			nodes++;
+		int[] route = new int[nodes];
+		for(int cell=targetCell, i=nodes-1;cell!=startCell;cell=parent[cell], i--)
+			route[i] = cell;
+
+		pathStamp++;
+		pathBlocked = false;
+		int cell = startCell;
+		for(int node:route) {
+			int dir = parentDirection[node];
+			cell = step(cell, dir);
+			path.add(MOVES[dir]);
+			onPath[cell] = pathStamp;
+
+			while(cell != node) {
+				if(path.size() > length)
+					throw new UnsolvableProblemException();
+				dir = exit(cell, dir);
+				cell = step(cell, dir);
+				path.add(MOVES[dir]);
+				onPath[cell] = pathStamp;
+			}
+		}
+
+		solved = true;
+		return path;
+	}
+}
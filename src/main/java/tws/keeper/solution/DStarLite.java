@@ -0,0 +1,310 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>D* Lite implementation to find the best path from the keeper to a target
+ * Cell, keeping the search state between calls.
+ *
+ * <p>The search runs backwards, from the target to the keeper, so the cost (g)
+ * of every expanded cell stays valid while the keeper moves. The planner listens
+ * to the MazeExplorer: when a wall is marked only that cell and its neighbors are
+ * queued again, and the next call to solve repairs the affected part of the search
+ * instead of running it from scratch. The whole search is only started again when
+ * the target changes or the map is replaced.
+ *
+ * <p>Cells are identified by their index (vertical*width+horizontal) in the map,
+ * the heuristic function is the Manhattan distance to the keeper.
+ */
+public class DStarLite implements PathFinder, MazeExplorer.MapListener {
+	private static final int INFINITY = Integer.MAX_VALUE/2;
+
+	private MazeExplorer map;
+	private ArrayList<Position> pathPositions = null;
+
+	private int width;
+	private int[] g;
+	private int[] rhs; //One step lookahead of g
+	private IndexedHeap openSet = null;
+	private int km = 0; //Accumulated heuristic offset from keeper moves
+	private int goal = -1;
+	private int last; //Keeper cell in the last search
+	private boolean initialized = false;
+
+	private int[] changed = new int[16]; //Cells marked as wall since the last search
+	private int changedCount = 0;
+	private int[] onPath; //Path stamp of the cells in the current path
+	private int pathStamp = 0;
+	private boolean pathBlocked = false;
+	private int expanded = 0;
+	private long memory = 0;
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 */
+	public DStarLite(MazeExplorer explorer) {
+		this.map = explorer;
+		explorer.addMapListener(this);
+	}
+
+	/**
+	 *
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
+	public boolean needUpdate() {
+		return pathPositions == null || pathBlocked;
+	}
+
+	/**
+	 *
+	 * @return Cells expanded by the last call to solve, repairing or starting the search.
+	 */
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+
+	@Override
+	public long getPeakMemory() {
+		return memory;
+	}
+
+	@Override
+	public int getOpenSetPeak() {
+		return openSet == null? 0 : openSet.peak();
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		if(!initialized)
+			return;
+
+		int cell = y*width + x;
+		if(changedCount == changed.length)
+			changed = Arrays.copyOf(changed, 2*changedCount);
+		changed[changedCount++] = cell;
+
+		if(onPath[cell] == pathStamp)
+			pathBlocked = true;
+	}
+
+	@Override
+	public void mapReplaced() {
+		initialized = false;
+		pathPositions = null;
+	}
+
+	/**
+	 * Finds the best path to reach the target, repairing the previous
+	 * search if the target has not changed.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	@Override
+	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException {
+		int height = map.getHeight();
+		int x = start.getHorizontal();
+		int y = start.getVertical();
+
+		if(x<0 || y<0 || x>=map.getWidth() || y>=height || !map.canVisit(target))
+			throw new UnsolvableProblemException();
+
+		int mapWidth = map.getWidth();
+		int targetCell = target.getVertical()*mapWidth + target.getHorizontal();
+		int startCell = y*mapWidth + x;
+		expanded = 0;
+
+		if(!initialized || targetCell != goal || width != mapWidth || g.length != mapWidth*height)
+			initialize(targetCell, startCell, mapWidth, height);
+		else if(last != startCell)
+			km += heuristic(last, startCell);
+		last = startCell;
+
+		for(int i=0;i<changedCount;i++) {
+			int cell = changed[i];
+			updateVertex(cell, startCell);
+			updateNeighbors(cell, startCell);
+		}
+		changedCount = 0;
+
+		openSet.resetPeak();
+		computeShortestPath(startCell);
+
+		if(g[startCell] >= INFINITY)
+			throw new UnsolvableProblemException();
+
+		return getPath(startCell);
+	}
+
+	private void initialize(int targetCell, int startCell, int mapWidth, int mapHeight) {
+		int size = mapWidth*mapHeight;
+
+		if(g == null || g.length != size) {
+			g = new int[size];
+			rhs = new int[size];
+			onPath = new int[size];
+			openSet = new IndexedHeap(size);
+			memory = (long)size*(3*Integer.BYTES + IndexedHeap.BYTES_PER_ITEM);
+		}
+		else
+			openSet.clear();
+
+		width = mapWidth;
+		Arrays.fill(g, INFINITY);
+		Arrays.fill(rhs, INFINITY);
+		km = 0;
+		goal = targetCell;
+		changedCount = 0;
+
+		rhs[goal] = 0;
+		openSet.push(goal, key(goal, startCell));
+		initialized = true;
+	}
+
+	private int heuristic(int from, int to) {
+		return Math.abs(from % width - to % width) + Math.abs(from / width - to / width);
+	}
+
+	private long key(int cell, int startCell) {
+		int min = Math.min(g[cell], rhs[cell]);
+		return ((long)(min + heuristic(cell, startCell) + km) << 32) | min;
+	}
+
+	private boolean isFree(int cell) {
+		return map.canVisit(cell / width, cell % width);
+	}
+
+	/**
+	 * Recompute the lookahead value of a cell and queue it if it is inconsistent.
+	 */
+	private void updateVertex(int cell, int startCell) {
+		if(cell != goal) {
+			int best = INFINITY;
+
+			if(isFree(cell)) {
+				int x = cell % width;
+				int y = cell / width;
+				best = Math.min(best, successorCost(y-1, x));
+				best = Math.min(best, successorCost(y+1, x));
+				best = Math.min(best, successorCost(y, x-1));
+				best = Math.min(best, successorCost(y, x+1));
+			}
+
+			rhs[cell] = best;
+		}
+
+		if(g[cell] != rhs[cell])
+			openSet.push(cell, key(cell, startCell));
+		else
+			openSet.remove(cell);
+	}
+
+	private int successorCost(int y, int x) {
+		if(!map.canVisit(y, x))
+			return INFINITY;
+
+		int cost = g[y*width + x];
+		return cost >= INFINITY? INFINITY : cost+1;
+	}
+
+	private void updateNeighbors(int cell, int startCell) {
+		int x = cell % width;
+		int y = cell / width;
+
+		if(y > 0)
+			updateVertex(cell - width, startCell);
+		if(y < g.length/width - 1)
+			updateVertex(cell + width, startCell);
+		if(x > 0)
+			updateVertex(cell - 1, startCell);
+		if(x < width - 1)
+			updateVertex(cell + 1, startCell);
+	}
+
+	private void computeShortestPath(int startCell) {
+		while(!openSet.isEmpty() &&
+				(openSet.peekPriority() < key(startCell, startCell) || rhs[startCell] != g[startCell])) {
+			int cell = openSet.peek();
+			long oldKey = openSet.peekPriority();
+			long newKey = key(cell, startCell);
+			expanded++;
+
+			if(oldKey < newKey)
+				openSet.push(cell, newKey);
+			else if(g[cell] > rhs[cell]) {
+				g[cell] = rhs[cell];
+				openSet.remove(cell);
+				updateNeighbors(cell, startCell);
+			}
+			else {
+				g[cell] = INFINITY;
+				updateVertex(cell, startCell);
+				updateNeighbors(cell, startCell);
+			}
+		}
+	}
+
+	/**
+	 * Follow the lowest cost neighbors from the keeper to the target.
+	 *
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath(int startCell) throws UnsolvableProblemException {
+		int length = g[startCell];
+		ArrayList<Action> path = new ArrayList<Action>(length);
+		pathPositions = new ArrayList<Position>(length);
+		pathStamp++;
+		pathBlocked = false;
+
+		int cell = startCell;
+		while(cell != goal) {
+			int x = cell % width;
+			int y = cell / width;
+			int next = -1;
+			int best = INFINITY;
+			Action move = Action.DO_NOTHING;
+
+			if(successorCost(y-1, x) < best) {
+				best = successorCost(y-1, x);
+				next = cell - width;
+				move = Action.GO_UP;
+			}
+			if(successorCost(y+1, x) < best) {
+				best = successorCost(y+1, x);
+				next = cell + width;
+				move = Action.GO_DOWN;
+			}
+			if(successorCost(y, x-1) < best) {
+				best = successorCost(y, x-1);
+				next = cell - 1;
+				move = Action.GO_LEFT;
+			}
+			if(successorCost(y, x+1) < best) {
+				best = successorCost(y, x+1);
+				next = cell + 1;
+				move = Action.GO_RIGHT;
+			}
+
+			if(next < 0 || path.size() > length) {
+				pathPositions = null;
+				throw new UnsolvableProblemException();
+			}
+
+			path.add(move);
+			pathPositions.add(new Position(next / width, next % width));
+			onPath[next] = pathStamp;
+			cell = next;
+		}
+
+		return path;
+	}
+}
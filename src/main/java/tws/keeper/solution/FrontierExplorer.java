@@ -0,0 +1,178 @@
+package tws.keeper.solution;
+
+import java.util.Arrays;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+
+/**
+ *
+ * <p>Frontier based exploration. The frontier is the set of cells seen to be
+ * open (not walls) but not visited yet, it is updated as cells are seen and
+ * visited. Each time the keeper reaches its target a breadth first search runs
+ * from the keeper over the visited cells until it reaches the frontier, and the
+ * next target is the nearest frontier cell. Between cells at the same distance
+ * the last one seen is taken, so the branch being explored is finished before
+ * moving to another one (preferring the cells with more neighbors never seen
+ * makes the keeper leave branches half explored, and walk back later).
+ *
+ * <p>Paths only cross visited cells, so they are never blocked by new walls and
+ * no search is needed until the target is reached. Unlike a depth first search,
+ * after a dead end the keeper goes to the nearest unexplored branch instead of
+ * walking back through every cell of the branch it came from.
+ *
+ * <p>Cells visited are marked as explored in the MazeExplorer, walls are read from it.
+ * The state of every cell is kept with the order it was seen in: never seen (0),
+ * in the frontier (the order, from 1) or visited (VISITED).
+ */
+public class FrontierExplorer {
+	private static final int UNSEEN = 0;
+	private static final int VISITED = -1;
+
+	private MazeExplorer map;
+	private int width;
+	private int size;
+	private int frontierSize = 0;
+	private int[] seenAt; //Order in which frontier cells were seen, UNSEEN or VISITED
+	private int seen = 0;
+
+	private int[] queue;
+	private int[] parent;
+	private int[] reached; //Search stamp of the cells reached by the search
+	private int search = 0;
+	private int[] path = new int[16]; //Cells to the target, in reverse order
+	private int pathLength = 0;
+
+	/**
+	 *
+	 * @param explorer Map with the walls found.
+	 */
+	public FrontierExplorer(MazeExplorer explorer) {
+		this.map = explorer;
+		this.width = explorer.getWidth();
+		size = width*explorer.getHeight();
+		queue = new int[size];
+		parent = new int[size];
+		reached = new int[size];
+		seenAt = new int[size];
+	}
+
+	/**
+	 * A cell has been seen and it is not a wall.
+	 * @param pos Position of the cell.
+	 */
+	public void seeOpen(Position pos) {
+		int cell = pos.getVertical()*width + pos.getHorizontal();
+		if(seenAt[cell] == UNSEEN) {
+			seenAt[cell] = ++seen;
+			frontierSize++;
+		}
+	}
+
+	/**
+	 * The keeper is in a cell.
+	 * @param pos Keeper position.
+	 */
+	public void visit(Position pos) {
+		int cell = pos.getVertical()*width + pos.getHorizontal();
+		if(seenAt[cell] > UNSEEN)
+			frontierSize--;
+		if(seenAt[cell] != VISITED) {
+			seenAt[cell] = VISITED;
+			map.markExplored(pos);
+		}
+	}
+
+	/**
+	 *
+	 * @return True if there are cells seen but not visited.
+	 */
+	public boolean hasFrontier() {
+		return frontierSize > 0;
+	}
+
+	/**
+	 * Perform a step towards the frontier.
+	 * @param pos Current position of the keeper, already visited.
+	 * @return Next Action, DO_NOTHING if there is nothing left to explore.
+	 */
+	public Action explore(Position pos) {
+		int cell = pos.getVertical()*width + pos.getHorizontal();
+
+		if(pathLength == 0 || !adjacent(cell, path[pathLength-1]) || seenAt[path[0]] <= UNSEEN)
+			if(!findFrontier(cell))
+				return Action.DO_NOTHING;
+
+		int next = path[--pathLength];
+		return next == cell - width? Action.GO_UP :
+				next == cell + width? Action.GO_DOWN :
+				next == cell - 1? Action.GO_LEFT : Action.GO_RIGHT;
+	}
+
+	private boolean adjacent(int cell, int other) {
+		int distance = Math.abs(cell - other);
+		return distance == 1 || distance == width;
+	}
+
+	/**
+	 * Breadth first search from the keeper through visited cells, stopping
+	 * at the first distance where frontier cells are found.
+	 */
+	private boolean findFrontier(int start) {
+		pathLength = 0;
+		if(frontierSize == 0)
+			return false;
+
+		search++;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		reached[start] = search;
+		int best = -1;
+
+		while(head < tail && best < 0) {
+			int layerEnd = tail;
+
+			while(head < layerEnd) {
+				int cell = queue[head++];
+				tail = expand(cell, cell - width, tail);
+				tail = expand(cell, cell + width, tail);
+				tail = expand(cell, cell - 1, tail);
+				tail = expand(cell, cell + 1, tail);
+			}
+
+			for(int i=layerEnd;i<tail;i++) {
+				int cell = queue[i];
+				if(seenAt[cell] > UNSEEN) {
+					if(best < 0 || seenAt[cell] > seenAt[best])
+						best = cell;
+				}
+			}
+		}
+
+		if(best < 0)
+			return false;
+
+		for(int cell=best;cell!=start;cell=parent[cell]) {
+			if(pathLength == path.length)
+				path = Arrays.copyOf(path, 2*pathLength);
+			path[pathLength++] = cell;
+		}
+		return true;
+	}
+
+	/**
+	 * Queue a neighbor of a visited cell if it is open and was not reached.
+	 */
+	private int expand(int from, int cell, int tail) {
+		if(cell < 0 || cell >= size || reached[cell] == search || seenAt[cell] == UNSEEN)
+			return tail;
+		if(seenAt[from] != VISITED)
+			return tail; //Nothing is known beyond the frontier
+
+		reached[cell] = search;
+		parent[cell] = from;
+		queue[tail] = cell;
+		return tail + 1;
+	}
+}
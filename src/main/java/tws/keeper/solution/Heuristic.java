@@ -0,0 +1,37 @@
+package tws.keeper.solution;
+
+/**
+ *
+ * <p>Estimate of the distance from a cell to the target, for the A* search.
+ *
+ * <p>The estimate must never be above the real distance (admissible) and must not
+ * drop by more than 1 from one cell to the next (consistent), or the paths found
+ * are not the shortest ones.
+ */
+@FunctionalInterface
+public interface Heuristic {
+	/**
+	 * Manhattan distance, the default one. It ignores walls.
+	 */
+	Heuristic MANHATTAN = (x, y, targetX, targetY) -> Math.abs(targetX-x) + Math.abs(targetY-y);
+
+	/**
+	 *
+	 * @return Estimate of the distance from (x, y) to the target.
+	 */
+	int estimate(int x, int y, int targetX, int targetY);
+
+	/**
+	 * Called before every search, with its target.
+	 */
+	default void prepare(int targetX, int targetY) {
+	}
+
+	/**
+	 *
+	 * @return Bytes held by the heuristic.
+	 */
+	default long getMemory() {
+		return 0;
+	}
+}
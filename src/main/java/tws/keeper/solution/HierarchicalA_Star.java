@@ -0,0 +1,552 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>Hierarchical A* (HPA*) for large maps: the map is split in square clusters,
+ * and the search runs over the entrances between clusters instead of the cells.
+ *
+ * <p>Along the border of two clusters, every run of cells open on both sides is
+ * an entrance: one pair of cells in its middle, or one at each end for long runs.
+ * The cells of the entrances are the nodes of the abstract graph. Adjacent nodes
+ * of two clusters are one step apart, and the distances between the nodes of a
+ * cluster are found by breadth first searches inside the cluster. A search adds
+ * the keeper and the target to the graph, with their distances to the nodes of
+ * their clusters, runs A* over the graph (the Manhattan distance to the target
+ * is still a consistent heuristic) and refines the abstract path searching again
+ * inside the clusters it crosses.
+ *
+ * <p>Clusters and borders are rebuilt lazily: a wall marked in a cluster marks it
+ * as dirty, and the border it is on if it is on one, and they are only rebuilt
+ * when a search reaches them. The distances from a node to the other nodes of its
+ * cluster are only found when the node is first expanded after the cluster is
+ * rebuilt. Paths are not always the shortest ones, as they go through the
+ * entrance nodes.
+ *
+ * <p>The abstraction pays off on large maps mostly known. While most of the map
+ * is unknown, and so open, the flat A* goes straight to the target and expands
+ * fewer cells than the searches inside the clusters.
+ */
+public class HierarchicalA_Star implements PathFinder, MazeExplorer.MapListener {
+	/**
+	 * Side of the clusters if no size is given.
+	 */
+	public static final int DEFAULT_CLUSTER_SIZE = 16;
+	private static final int LONG_ENTRANCE = 6; //Entrances this long get a node at each end
+	private static final int UNREACHABLE = Integer.MAX_VALUE/4;
+	private static final int NO_ROW = -1;
+	private static final int[] DX = {0, 0, -1, 1};
+	private static final int[] DY = {-1, 1, 0, 0};
+
+	private MazeExplorer map;
+	private final int clusterSize;
+
+	private int width = 0;
+	private int height;
+	private int clustersX;
+	private int clustersY;
+	private int[][] borderNodes; //Entrance cells in pairs (this side, other side), 2 borders per cluster: right and down
+	private boolean[] borderDirty;
+	private int[][] clusterNodes; //Entrance cells of every cluster
+	private int[][] clusterDistances; //Between every pair of nodes of a cluster, row by row, NO_ROW until found
+	private boolean[] clusterDirty;
+	private byte[] entrances; //Entrances using a cell, 0 if it is not a node
+	private int[] nodeIndex; //Index of a node in the list of its cluster
+	private long clusterMemory = 0;
+
+	private IndexedHeap openSet = null;
+	private int[] gScore;
+	private int[] parent;
+	private int[] visited; //Search stamp when the cell g score was set
+	private int[] closed;  //Search stamp when the cell was expanded
+	private int search = 0;
+
+	private int[] localDistance; //Searches inside a cluster, by cell of the cluster
+	private int[] localParent;
+	private int[] queue;
+	private int[] startDistances = new int[0]; //From the keeper to the nodes of its cluster
+	private int[] targetDistances = new int[0]; //From the nodes of the target cluster to the target
+
+	private int[] onPath; //Path stamp of the cells in the last path
+	private int pathStamp = 0;
+	private boolean solved = false;
+	private boolean pathBlocked = false;
+	private int expanded = 0;
+	private long memory = 0;
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 */
+	public HierarchicalA_Star(MazeExplorer explorer) {
+		this(explorer, DEFAULT_CLUSTER_SIZE);
+	}
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 * @param clusterSize Side of the clusters, at least 2.
+	 */
+	public HierarchicalA_Star(MazeExplorer explorer, int clusterSize) {
+		if(clusterSize < 2)
+			throw new IllegalArgumentException("Cluster size must be at least 2: " + clusterSize);
+		this.map = explorer;
+		this.clusterSize = clusterSize;
+		explorer.addMapListener(this);
+	}
+
+	/**
+	 *
+	 * @return Abstract nodes expanded, and cells expanded refining the path.
+	 */
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 *
+	 * @return Bytes of the abstract search state and of the clusters.
+	 */
+	@Override
+	public long getPeakMemory() {
+		return memory + clusterMemory;
+	}
+
+	@Override
+	public int getOpenSetPeak() {
+		return openSet == null? 0 : openSet.peak();
+	}
+
+	/**
+	 *
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
+	public boolean needUpdate() {
+		return !solved || pathBlocked;
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		if(width == 0)
+			return;
+
+		int cx = x / clusterSize;
+		int cy = y / clusterSize;
+		int cluster = cy*clustersX + cx;
+		clusterDirty[cluster] = true;
+		if(x == Math.min((cx+1)*clusterSize, width) - 1 && cx+1 < clustersX)
+			borderDirty[2*cluster] = true;
+		if(x == cx*clusterSize && cx > 0)
+			borderDirty[2*(cluster-1)] = true;
+		if(y == Math.min((cy+1)*clusterSize, height) - 1 && cy+1 < clustersY)
+			borderDirty[2*cluster + 1] = true;
+		if(y == cy*clusterSize && cy > 0)
+			borderDirty[2*(cluster-clustersX) + 1] = true;
+
+		if(solved && onPath[y*width + x] == pathStamp)
+			pathBlocked = true;
+	}
+
+	@Override
+	public void mapReplaced() {
+		solved = false;
+		width = 0;
+	}
+
+	/**
+	 * Searches the abstract graph and refines the path found.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	@Override
+	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException {
+		int x = start.getHorizontal();
+		int y = start.getVertical();
+
+		if(x<0 || y<0 || x>=map.getWidth() || y>=map.getHeight() || !map.canVisit(target))
+			throw new UnsolvableProblemException();
+
+		prepare(map.getWidth(), map.getHeight());
+		expanded = 0;
+		solved = false;
+
+		int startCell = y*width + x;
+		int targetX = target.getHorizontal();
+		int targetY = target.getVertical();
+		int targetCell = targetY*width + targetX;
+		int startCluster = cluster(startCell);
+		int targetCluster = cluster(targetCell);
+
+		ensureCluster(startCluster);
+		ensureCluster(targetCluster);
+		startDistances = nodeDistances(startCluster, startCell, startDistances);
+		int direct = startCluster == targetCluster? distanceTo(targetCell) : UNREACHABLE;
+		targetDistances = nodeDistances(targetCluster, targetCell, targetDistances);
+
+		relax(startCell, 0, -1, targetX, targetY);
+		while(!openSet.isEmpty()) {
+			int current = openSet.pop();
+			if(current == targetCell)
+				return getPath(startCell, targetCell);
+
+			closed[current] = search;
+			expanded++;
+			int g = gScore[current];
+
+			if(current == startCell) {
+				int[] nodes = clusterNodes[startCluster];
+				for(int i=0;i<nodes.length;i++)
+					relax(nodes[i], g + startDistances[i], current, targetX, targetY);
+				relax(targetCell, g + direct, current, targetX, targetY);
+			}
+
+			if(entrances[current] == 0)
+				continue;
+
+			int cluster = cluster(current);
+			ensureCluster(cluster);
+			if(entrances[current] == 0)
+				continue; //Its border has just been rebuilt without it
+
+			int[] nodes = clusterNodes[cluster];
+			int[] distances = clusterDistances[cluster];
+			int row = nodeIndex[current]*nodes.length;
+			if(distances[row] == NO_ROW)
+				findDistances(cluster, nodeIndex[current]);
+			for(int i=0;i<nodes.length;i++)
+				relax(nodes[i], g + distances[row + i], current, targetX, targetY);
+
+			if(cluster == targetCluster)
+				relax(targetCell, g + targetDistances[nodeIndex[current]], current, targetX, targetY);
+
+			int cx = current % width;
+			int cy = current / width;
+			for(int dir=0;dir<4;dir++) {
+				int nx = cx + DX[dir];
+				int ny = cy + DY[dir];
+				if(!map.canVisit(ny, nx))
+					continue;
+				int neighbor = ny*width + nx;
+				if(entrances[neighbor] > 0 && cluster(neighbor) != cluster)
+					relax(neighbor, g + 1, current, targetX, targetY);
+			}
+		}
+
+		throw new UnsolvableProblemException();
+	}
+
+	/**
+	 * Open a node, or lower its cost, if it is not closed.
+	 */
+	private void relax(int cell, int g, int from, int targetX, int targetY) {
+		if(g >= UNREACHABLE || closed[cell] == search)
+			return;
+
+		if(visited[cell] != search || g < gScore[cell]) {
+			gScore[cell] = g;
+			parent[cell] = from;
+			visited[cell] = search;
+			int h = Math.abs(targetX - cell % width) + Math.abs(targetY - cell / width);
+			openSet.push(cell, (long)(g + h) << 24 | h);
+		}
+	}
+
+	private int cluster(int cell) {
+		return (cell / width / clusterSize)*clustersX + cell % width / clusterSize;
+	}
+
+	/**
+	 * Rebuild the dirty borders of a cluster, and then the cluster if it is dirty.
+	 * Rebuilding a border makes the clusters on both sides dirty.
+	 */
+	private void ensureCluster(int cluster) {
+		int cx = cluster % clustersX;
+		int cy = cluster / clustersX;
+		if(borderDirty[2*cluster])
+			buildBorder(cluster, false);
+		if(borderDirty[2*cluster + 1])
+			buildBorder(cluster, true);
+		if(cx > 0 && borderDirty[2*(cluster-1)])
+			buildBorder(cluster-1, false);
+		if(cy > 0 && borderDirty[2*(cluster-clustersX) + 1])
+			buildBorder(cluster-clustersX, true);
+
+		if(clusterDirty[cluster])
+			buildCluster(cluster);
+	}
+
+	/**
+	 * Find the entrances of the border of a cluster with the cluster on its right or below.
+	 */
+	private void buildBorder(int cluster, boolean down) {
+		int border = 2*cluster + (down? 1 : 0);
+		int[] old = borderNodes[border];
+		for(int cell:old)
+			entrances[cell]--;
+
+		int x0 = cluster % clustersX * clusterSize;
+		int y0 = cluster / clustersX * clusterSize;
+		int length = down? Math.min(clusterSize, width - x0) : Math.min(clusterSize, height - y0);
+		int step = down? 1 : width; //Along the border
+		int across = down? width : 1;
+		int first = down? (Math.min(y0 + clusterSize, height) - 1)*width + x0 : y0*width + Math.min(x0 + clusterSize, width) - 1;
+
+		int[] nodes = new int[4*length];
+		int count = 0;
+		int runStart = -1;
+		for(int i=0;i<=length;i++) {
+			int cell = first + i*step;
+			boolean open = i < length && isOpen(cell) && isOpen(cell + across);
+			if(open && runStart < 0)
+				runStart = i;
+			if(!open && runStart >= 0) {
+				int runEnd = i - 1;
+				if(runEnd - runStart + 1 >= LONG_ENTRANCE) {
+					count = addEntrance(nodes, count, first + runStart*step, across);
+					count = addEntrance(nodes, count, first + runEnd*step, across);
+				}
+				else
+					count = addEntrance(nodes, count, first + (runStart + runEnd)/2*step, across);
+				runStart = -1;
+			}
+		}
+
+		borderNodes[border] = Arrays.copyOf(nodes, count);
+		clusterMemory += (long)(count - old.length)*Integer.BYTES;
+		borderDirty[border] = false;
+		clusterDirty[cluster] = true;
+		clusterDirty[cluster + (down? clustersX : 1)] = true;
+	}
+
+	private int addEntrance(int[] nodes, int count, int cell, int across) {
+		nodes[count++] = cell;
+		nodes[count++] = cell + across;
+		entrances[cell]++;
+		entrances[cell + across]++;
+		return count;
+	}
+
+	private boolean isOpen(int cell) {
+		return map.canVisit(cell / width, cell % width);
+	}
+
+	/**
+	 * Collect the nodes of a cluster from its borders. Distances between them are found later.
+	 */
+	private void buildCluster(int cluster) {
+		int cx = cluster % clustersX;
+		int cy = cluster / clustersX;
+		int[] nodes = new int[0];
+		nodes = collect(nodes, borderNodes[2*cluster], 0);
+		nodes = collect(nodes, borderNodes[2*cluster + 1], 0);
+		if(cx > 0)
+			nodes = collect(nodes, borderNodes[2*(cluster-1)], 1);
+		if(cy > 0)
+			nodes = collect(nodes, borderNodes[2*(cluster-clustersX) + 1], 1);
+
+		int n = nodes.length;
+		int[] distances = new int[n*n];
+		for(int i=0;i<n;i++) {
+			nodeIndex[nodes[i]] = i;
+			distances[i*n] = NO_ROW;
+		}
+
+		clusterMemory += (long)(n + n*n - clusterNodes[cluster].length - clusterDistances[cluster].length)*Integer.BYTES;
+		clusterNodes[cluster] = nodes;
+		clusterDistances[cluster] = distances;
+		clusterDirty[cluster] = false;
+	}
+
+	/**
+	 * Distances from a node to every node of its cluster.
+	 */
+	private void findDistances(int cluster, int node) {
+		int[] nodes = clusterNodes[cluster];
+		int[] distances = clusterDistances[cluster];
+		searchCluster(cluster, nodes[node]);
+		for(int i=0;i<nodes.length;i++)
+			distances[node*nodes.length + i] = distanceTo(nodes[i]);
+	}
+
+	/**
+	 * Add the cells of one side of a border to the nodes, once each.
+	 */
+	private int[] collect(int[] nodes, int[] pairs, int side) {
+		int count = nodes.length;
+		nodes = Arrays.copyOf(nodes, count + pairs.length/2);
+		outer:
+		for(int i=side;i<pairs.length;i+=2) {
+			for(int j=0;j<count;j++)
+				if(nodes[j] == pairs[i])
+					continue outer;
+			nodes[count++] = pairs[i];
+		}
+		return Arrays.copyOf(nodes, count);
+	}
+
+	/**
+	 * Distances from a cell to the nodes of its cluster.
+	 */
+	private int[] nodeDistances(int cluster, int cell, int[] distances) {
+		int[] nodes = clusterNodes[cluster];
+		if(distances.length < nodes.length)
+			distances = new int[nodes.length];
+		searchCluster(cluster, cell);
+		for(int i=0;i<nodes.length;i++)
+			distances[i] = distanceTo(nodes[i]);
+		return distances;
+	}
+
+	/**
+	 * Breadth first search from a cell over the open cells of its cluster.
+	 * Distances and parents are kept by cell of the cluster.
+	 */
+	private void searchCluster(int cluster, int from) {
+		int x0 = cluster % clustersX * clusterSize;
+		int y0 = cluster / clustersX * clusterSize;
+		int x1 = Math.min(x0 + clusterSize, width);
+		int y1 = Math.min(y0 + clusterSize, height);
+		Arrays.fill(localDistance, UNREACHABLE);
+
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = from;
+		localDistance[local(from)] = 0;
+		localParent[local(from)] = -1;
+		while(head < tail) {
+			int cell = queue[head++];
+			int x = cell % width;
+			int y = cell / width;
+			int d = localDistance[local(cell)] + 1;
+			for(int dir=0;dir<4;dir++) {
+				int nx = x + DX[dir];
+				int ny = y + DY[dir];
+				if(nx < x0 || ny < y0 || nx >= x1 || ny >= y1 || !map.canVisit(ny, nx))
+					continue;
+				int next = ny*width + nx;
+				if(localDistance[local(next)] != UNREACHABLE)
+					continue;
+				localDistance[local(next)] = d;
+				localParent[local(next)] = cell;
+				queue[tail++] = next;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return Distance to a cell from the last cell searched in its cluster.
+	 */
+	private int distanceTo(int cell) {
+		return localDistance[local(cell)];
+	}
+
+	private int local(int cell) {
+		return (cell / width % clusterSize)*clusterSize + cell % width % clusterSize;
+	}
+
+	/**
+	 * Allocate the search arrays and make every cluster dirty if the map size has changed.
+	 */
+	private void prepare(int mapWidth, int mapHeight) {
+		int size = mapWidth*mapHeight;
+
+		if(width != mapWidth || openSet == null || openSet.capacity() != size) {
+			width = mapWidth;
+			height = mapHeight;
+			clustersX = (width + clusterSize - 1) / clusterSize;
+			clustersY = (height + clusterSize - 1) / clusterSize;
+			int clusters = clustersX*clustersY;
+			borderNodes = new int[2*clusters][];
+			clusterNodes = new int[clusters][];
+			clusterDistances = new int[clusters][];
+			borderDirty = new boolean[2*clusters];
+			clusterDirty = new boolean[clusters];
+			for(int cluster=0;cluster<clusters;cluster++) {
+				borderNodes[2*cluster] = new int[0];
+				borderNodes[2*cluster + 1] = new int[0];
+				clusterNodes[cluster] = new int[0];
+				clusterDistances[cluster] = new int[0];
+				borderDirty[2*cluster] = cluster % clustersX + 1 < clustersX;
+				borderDirty[2*cluster + 1] = cluster / clustersX + 1 < clustersY;
+				clusterDirty[cluster] = true;
+			}
+			clusterMemory = 0;
+
+			openSet = new IndexedHeap(size);
+			gScore = new int[size];
+			parent = new int[size];
+			visited = new int[size];
+			closed = new int[size];
+			onPath = new int[size];
+			nodeIndex = new int[size];
+			entrances = new byte[size];
+			localDistance = new int[clusterSize*clusterSize];
+			localParent = new int[clusterSize*clusterSize];
+			queue = new int[clusterSize*clusterSize];
+			search = 0;
+			memory = (long)size*(6*Integer.BYTES + 1 + IndexedHeap.BYTES_PER_ITEM);
+		}
+		else
+			openSet.clear();
+
+		search++;
+	}
+
+	/**
+	 * Follow the abstract path back to the start, and join the paths inside the
+	 * clusters between its nodes.
+	 *
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath(int startCell, int targetCell) {
+		int nodes = 0;
+		for(int cell=targetCell;cell!=-1;cell=parent[cell])
+			nodes++;
+		int[] abstractPath = new int[nodes];
+		for(int cell=targetCell;cell!=-1;cell=parent[cell])
+			abstractPath[--nodes] = cell;
+
+		ArrayList<Action> path = new ArrayList<Action>(gScore[targetCell]);
+		pathStamp++;
+		pathBlocked = false;
+		solved = true;
+
+		int[] segment = new int[clusterSize*clusterSize];
+		for(int i=1;i<abstractPath.length;i++) {
+			int from = abstractPath[i-1];
+			int to = abstractPath[i];
+			int length = 0;
+			if(Math.abs(from - to) == width || (Math.abs(from - to) == 1 && from / width == to / width))
+				segment[length++] = to;
+			else {
+				searchCluster(cluster(from), from);
+				expanded += distanceTo(to);
+				for(int cell=to;cell!=from;cell=localParent[local(cell)])
+					segment[length++] = cell;
+			}
+
+			int cell = from;
+			while(length > 0) {
+				int next = segment[--length];
+				path.add(next == cell - width? Action.GO_UP
+						:next == cell + width? Action.GO_DOWN
+						:next == cell - 1? Action.GO_LEFT
+						:Action.GO_RIGHT);
+				onPath[next] = pathStamp;
+				cell = next;
+			}
+		}
+
+		return path;
+	}
+}
@@ -0,0 +1,334 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>Iterative deepening A* for maps too large for a search state per cell.
+ *
+ * <p>Each iteration is a depth first search from the keeper which does not go
+ * past cells whose f (g + Manhattan distance to the target) is above a threshold.
+ * The first threshold is the h of the keeper, and the next one is the lowest f
+ * found over the previous one, so the first path found is the shortest one.
+ * The search is iterative, its stack is the current path and it grows with it.
+ *
+ * <p>Without more state, every cell is searched again through each path reaching
+ * it. The lowest g of the cells reached in the iteration is kept in a fixed size
+ * table, indexed by the cell modulo its size: a cell reached again with a cost
+ * not lower than the one in the table is not searched again. Cells sharing an
+ * entry replace each other, which only costs time. A bit per cell marks the
+ * cells in the current path, so the search never walks in circles. The bits of
+ * the path found are kept until the next search, so a wall marked in the map
+ * tells in O(1) whether it blocks the path.
+ *
+ * <p>Searching cells again costs more and more as the map grows: a search
+ * between random cells of a known 200x200 maze takes about 60 ms on average and
+ * up to 0.5 s, against 2 ms for A_Star, and about a minute in a 1000x1000 maze.
+ * Maps of more than MAX_CELLS cells are rejected.
+ */
+public class IDA_Star implements PathFinder, MazeExplorer.MapListener {
+	/**
+	 * Entries of the table of costs if no size is given.
+	 */
+	public static final int DEFAULT_TABLE_SIZE = 1 << 20;
+	/**
+	 * Most cells of the maps searched.
+	 */
+	public static final int MAX_CELLS = 200*200;
+	private static final int[] DX = {0, 0, -1, 1};
+	private static final int[] DY = {-1, 1, 0, 0};
+	private static final Action[] MOVES = {Action.GO_UP, Action.GO_DOWN, Action.GO_LEFT, Action.GO_RIGHT};
+
+	private MazeExplorer map;
+	private final int tableSize;
+
+	private int width;
+	private int[] tableCell;
+	private int[] tableG;
+	private int[] tableIteration; //Iteration stamp of every entry
+	private int iteration = 0;
+	private int nextThreshold; //Lowest f over the threshold in the last iteration
+	private long[] onPath; //Bit per cell
+	private int[] stack = new int[64]; //Cells of the current path
+	private byte[] tried = new byte[64]; //Directions tried from every cell of the stack
+	private int pathDepth = -1; //Cells of the last path in the stack and marked on the path, -1 if none
+	private boolean pathBlocked = false;
+	private int expanded = 0;
+	private long memory = 0;
+
+	/**
+	 *
+	 * @param explorer Map to search. Changes in this map are tracked.
+	 */
+	public IDA_Star(MazeExplorer explorer) {
+		this(explorer, DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 *
+	 * @param explorer Map to search, of at most MAX_CELLS cells. Changes in this map are tracked.
+	 * @param tableSize Most entries of the table of costs. No more entries
+	 * than cells in the map are used.
+	 */
+	public IDA_Star(MazeExplorer explorer, int tableSize) {
+		if(tableSize < 1)
+			throw new IllegalArgumentException("Table size must be positive: " + tableSize);
+		checkSize(explorer.getWidth(), explorer.getHeight());
+		this.map = explorer;
+		this.tableSize = tableSize;
+		explorer.addMapListener(this);
+	}
+
+	@Override
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 *
+	 * @return Bytes of the table, of the bits of the path and of the deepest stack.
+	 */
+	@Override
+	public long getPeakMemory() {
+		return memory;
+	}
+
+	/**
+	 *
+	 * @return 0, the search is depth first and only keeps the current path.
+	 */
+	@Override
+	public int getOpenSetPeak() {
+		return 0;
+	}
+
+	/**
+	 *
+	 * @return True if there is no path or a wall has been marked in the path.
+	 */
+	@Override
+	public boolean needUpdate() {
+		return pathDepth < 0 || pathBlocked;
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		if(pathDepth >= 0 && isOnPath(y*width + x))
+			pathBlocked = true;
+	}
+
+	@Override
+	public void mapReplaced() {
+		if(pathDepth >= 0)
+			clearPath(pathDepth);
+		pathDepth = -1;
+	}
+
+	/**
+	 * Runs depth first searches with growing thresholds until the target is reached.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	@Override
+	public ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException {
+		int height = map.getHeight();
+		int x = start.getHorizontal();
+		int y = start.getVertical();
+
+		if(x<0 || y<0 || x>=map.getWidth() || y>=height || !map.canVisit(target))
+			throw new UnsolvableProblemException();
+
+		if(pathDepth >= 0)
+			clearPath(pathDepth);
+		pathDepth = -1;
+		prepare(map.getWidth(), height);
+		expanded = 0;
+
+		int startCell = y*width + x;
+		int targetX = target.getHorizontal();
+		int targetY = target.getVertical();
+		int threshold = heuristic(startCell, targetX, targetY);
+
+		while(threshold != Integer.MAX_VALUE) {
+			int depth = search(startCell, targetX, targetY, threshold);
+			if(depth >= 0) {
+				pathDepth = depth;
+				pathBlocked = false;
+				return getPath(depth);
+			}
+			threshold = nextThreshold;
+		}
+
+		throw new UnsolvableProblemException();
+	}
+
+	/**
+	 * Depth first search not going past the threshold.
+	 * @return Depth of the target in the stack, -1 if not reached. The lowest f
+	 * over the threshold is kept in nextThreshold.
+	 */
+	private int search(int startCell, int targetX, int targetY, int threshold) {
+		int targetCell = targetY*width + targetX;
+		iteration++;
+		nextThreshold = Integer.MAX_VALUE;
+		int depth = 0;
+		stack[0] = startCell;
+		tried[0] = 0;
+		setOnPath(startCell, true);
+		record(startCell, 0);
+
+		while(depth >= 0) {
+			int cell = stack[depth];
+			if(cell == targetCell)
+				return depth; //Path cells stay marked
+
+			if(tried[depth] == 4) {
+				setOnPath(cell, false);
+				depth--;
+				continue;
+			}
+
+			int dir = direction(cell, tried[depth]++, targetX, targetY);
+			int x = cell % width + DX[dir];
+			int y = cell / width + DY[dir];
+			if(!map.canVisit(y, x))
+				continue;
+
+			int next = y*width + x;
+			int g = depth + 1;
+			int f = g + Math.abs(targetX-x) + Math.abs(targetY-y);
+			if(isOnPath(next))
+				continue;
+			if(f > threshold) {
+				nextThreshold = Math.min(nextThreshold, f);
+				continue;
+			}
+			if(!record(next, g))
+				continue;
+
+			expanded++;
+			depth++;
+			if(depth == stack.length) {
+				stack = Arrays.copyOf(stack, 2*depth);
+				tried = Arrays.copyOf(tried, 2*depth);
+				memory = Math.max(memory, tableMemory() + (long)stack.length*(Integer.BYTES + 1));
+			}
+			stack[depth] = next;
+			tried[depth] = 0;
+			setOnPath(next, true);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Directions from a cell, the ones towards the target first.
+	 * @param i Number of directions tried from the cell.
+	 */
+	private int direction(int cell, int i, int targetX, int targetY) {
+		int dx = targetX - cell % width;
+		int dy = targetY - cell / width;
+		int horizontal = dx < 0? 2 : 3;
+		int vertical = dy < 0? 0 : 1;
+		int first = Math.abs(dx) >= Math.abs(dy)? horizontal : vertical;
+		int second = first == horizontal? vertical : horizontal;
+
+		switch(i) {
+			case 0: return first;
+			case 1: return second;
+			case 2: return second^1; //Opposite direction
+			default: return first^1;
+		}
+	}
+
+	/**
+	 * Keep the cost of a cell if it is the lowest one in this iteration.
+	 * @return False if the cell was reached before with a cost not higher.
+	 */
+	private boolean record(int cell, int g) {
+		int entry = cell % tableCell.length;
+		if(tableIteration[entry] == iteration && tableCell[entry] == cell && tableG[entry] <= g)
+			return false;
+
+		tableIteration[entry] = iteration;
+		tableCell[entry] = cell;
+		tableG[entry] = g;
+		return true;
+	}
+
+	private boolean isOnPath(int cell) {
+		return (onPath[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	private void setOnPath(int cell, boolean value) {
+		if(value)
+			onPath[cell >>> 6] |= 1L << cell;
+		else
+			onPath[cell >>> 6] &= ~(1L << cell);
+	}
+
+	private void clearPath(int depth) {
+		for(int i=0;i<=depth;i++)
+			setOnPath(stack[i], false);
+	}
+
+	private int heuristic(int cell, int targetX, int targetY) {
+		return Math.abs(targetX - cell % width) + Math.abs(targetY - cell / width);
+	}
+
+	private static void checkSize(int mapWidth, int mapHeight) {
+		if((long)mapWidth*mapHeight > MAX_CELLS)
+			throw new IllegalArgumentException("Map too big for IDA*: " + mapHeight + "x" + mapWidth + ", at most " + MAX_CELLS + " cells");
+	}
+
+	private long tableMemory() {
+		return (long)tableCell.length*3*Integer.BYTES + (long)onPath.length*Long.BYTES;
+	}
+
+	/**
+	 * Allocate the table and the bits of the path if the map size has changed.
+	 */
+	private void prepare(int mapWidth, int mapHeight) {
+		checkSize(mapWidth, mapHeight);
+		int size = mapWidth*mapHeight;
+		int entries = Math.min(size, tableSize);
+
+		if(tableCell == null || tableCell.length != entries || width != mapWidth) {
+			width = mapWidth;
+			tableCell = new int[entries];
+			tableG = new int[entries];
+			tableIteration = new int[entries];
+			onPath = new long[(size + 63) >>> 6];
+			iteration = 0;
+		}
+		memory = tableMemory() + (long)stack.length*(Integer.BYTES + 1);
+	}
+
+	/**
+	 * The stack holds the path from the keeper to the target.
+	 *
+	 * @return Array containing every Action to reach the target in the right order.
+	 */
+	private ArrayList<Action> getPath(int depth) {
+		ArrayList<Action> path = new ArrayList<Action>(depth);
+
+		for(int i=1;i<=depth;i++) {
+			int from = stack[i-1];
+			int cell = stack[i];
+			for(int dir=0;dir<4;dir++) {
+				if(cell == from + DY[dir]*width + DX[dir]) {
+					path.add(MOVES[dir]);
+					break;
+				}
+			}
+		}
+
+		return path;
+	}
+}
@@ -0,0 +1,225 @@
+package tws.keeper.solution;
+
+import java.util.Arrays;
+
+/**
+ *
+ * <p>Binary min-heap of integer items (cell indexes) with decrease-key support.
+ * Every item in [0, capacity) may be in the heap at most once. The position of
+ * each item inside the heap is tracked, so updating the priority of an item
+ * already queued does not need any linear scan.
+ *
+ * <p>Priorities are longs, so callers can pack a primary and a secondary key
+ * (e.g. f and h) in a single value to break ties.
+ */
+final class IndexedHeap {
+	/**
+	 * Bytes used by every item the heap can hold (heap, position and priority).
+	 */
+	static final int BYTES_PER_ITEM = 2*Integer.BYTES + Long.BYTES;
+	
+	private int[] heap;
+	private int[] position; //Position of every item in heap, -1 if not queued.
+	private long[] priority;
+	private int size = 0;
+	private int peak = 0; //Most items queued since the heap was cleared or the peak reset
+
+	/**
+	 * Create an empty heap.
+	 * @param capacity Number of different items the heap can hold.
+	 */
+	IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		priority = new long[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 *
+	 * @return Number of different items the heap can hold.
+	 */
+	int capacity() {
+		return position.length;
+	}
+
+	/**
+	 *
+	 * @return Number of queued items.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return Most items queued at once since the heap was cleared or the peak reset.
+	 */
+	int peak() {
+		return peak;
+	}
+
+	/**
+	 * Start measuring the peak from the items queued now.
+	 */
+	void resetPeak() {
+		peak = size;
+	}
+
+	/**
+	 *
+	 * @return True if there are no queued items.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 *
+	 * @param item Item to evaluate.
+	 * @return True if item is queued.
+	 */
+	boolean contains(int item) {
+		return position[item] >= 0;
+	}
+
+	/**
+	 *
+	 * @param item Queued item.
+	 * @return Current priority of the item.
+	 */
+	long priorityOf(int item) {
+		return priority[item];
+	}
+
+	/**
+	 *
+	 * @return Lowest priority in the heap. Heap must not be empty.
+	 */
+	long peekPriority() {
+		return priority[heap[0]];
+	}
+
+	/**
+	 *
+	 * @return Item with the lowest priority, without removing it.
+	 */
+	int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Insert an item, or change its priority if it is already queued.
+	 * @param item Item to insert.
+	 * @param newPriority Priority of the item.
+	 */
+	void push(int item, long newPriority) {
+		int pos = position[item];
+
+		if(pos < 0) {
+			pos = size++;
+			if(size > peak)
+				peak = size;
+			heap[pos] = item;
+			position[item] = pos;
+			priority[item] = newPriority;
+			siftUp(pos);
+		}
+		else {
+			long oldPriority = priority[item];
+			priority[item] = newPriority;
+			if(newPriority < oldPriority)
+				siftUp(pos);
+			else
+				siftDown(pos);
+		}
+	}
+
+	/**
+	 * Remove the item with the lowest priority.
+	 * @return Removed item.
+	 */
+	int pop() {
+		int top = heap[0];
+		removeAt(0);
+		return top;
+	}
+
+	/**
+	 * Remove an item if it is queued.
+	 * @param item Item to remove.
+	 */
+	void remove(int item) {
+		int pos = position[item];
+		if(pos >= 0)
+			removeAt(pos);
+	}
+
+	/**
+	 * Remove every queued item. Cost is proportional to the number
+	 * of queued items, not to the capacity.
+	 */
+	void clear() {
+		for(int i=0;i<size;i++)
+			position[heap[i]] = -1;
+		size = 0;
+		peak = 0;
+	}
+
+	private void removeAt(int pos) {
+		int item = heap[pos];
+		position[item] = -1;
+		size--;
+
+		if(pos == size)
+			return;
+
+		int last = heap[size];
+		heap[pos] = last;
+		position[last] = pos;
+		siftDown(pos);
+		siftUp(position[last]);
+	}
+
+	private void siftUp(int pos) {
+		int item = heap[pos];
+		long key = priority[item];
+
+		while(pos > 0) {
+			int parentPos = (pos-1) >>> 1;
+			int parent = heap[parentPos];
+			if(priority[parent] <= key)
+				break;
+			heap[pos] = parent;
+			position[parent] = pos;
+			pos = parentPos;
+		}
+
+		heap[pos] = item;
+		position[item] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int item = heap[pos];
+		long key = priority[item];
+		int half = size >>> 1;
+
+		while(pos < half) {
+			int childPos = 2*pos + 1;
+			int child = heap[childPos];
+			int rightPos = childPos + 1;
+			if(rightPos < size && priority[heap[rightPos]] < priority[child]) {
+				childPos = rightPos;
+				child = heap[childPos];
+			}
+			if(key <= priority[child])
+				break;
+			heap[pos] = child;
+			position[child] = pos;
+			pos = childPos;
+		}
+
+		heap[pos] = item;
+		position[item] = pos;
+	}
+}
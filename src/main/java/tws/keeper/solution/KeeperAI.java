@@ -1,5 +1,6 @@
 package tws.keeper.solution;
 
+import tws.keeper.metrics.KeeperMetrics;
 import tws.keeper.model.*;
 import tws.keeper.model.Observable;
 import tws.keeper.solution.A_Star.UnsolvableProblemException;
@@ -10,77 +11,216 @@ import java.util.*;
  * @author Ismael Yeste Espín
  *
  *	<p>Implementation of the keeper IA logic.
- *	For unknown key positions it performs the algorithm described in the MazeExplorer
- *	class. When all keys have been found, if door has been discovered it uses the A* 
- *	algorithm to reach it. Otherwise, it keeps running the MazeExplorer algorithm.
- *	<p>For known key positions it performs the A* algorithm described implemented in the
- *	A_Star class, starting by the closest key in Manhattan distance terms.
+ *	For unknown key positions it explores the maze as described in the FrontierExplorer
+ *	class, remembering the keys it sees. Exploration ends as soon as every key not found
+ *	has been seen: then the keys are collected in the order planned by the KeyRoutePlanner.
+ *	When all keys have been found, if door has been discovered it goes to the door.
+ *	Otherwise, it keeps exploring.
+ *	<p>For known key positions the order to collect the keys and reach the door is
+ *	planned once by the KeyRoutePlanner, which also gives the path to every stop while
+ *	the walls found since the plan do not block it. Other paths are planned with a PathFinder,
+ *	by default the DStarLite class, so when a wall is found in the path only the
+ *	affected part of the previous search is repaired.
  *	
  *	<p>If it is allowed to know key position, that should be indicated by setting
  *	the environment variable "CAST_TO_MAZE_ALLOWED" to "true".
+ *	
+ *	<p>Keepers playing a SharedMaze together can share a TeamMap: every cell seen
+ *	or visited is published to it, and the ones published by the other keepers
+ *	are read before planning, so the frontier does not include the cells other
+ *	keepers have visited. Keys may then be taken by other keepers, so a key is
+ *	forgotten once a keeper reaches its cell. The keys taken are counted from the
+ *	cells visited in the TeamMap, not from the maze: the maze counts a key as soon
+ *	as it is taken, before the keeper taking it publishes its visit, and the key
+ *	would be counted twice meanwhile.
+ *	<p>A key seen which is not in the planned route makes the route be planned again.
+ *	<p>Only the map of the keeper can be kept off the heap (see MazeExplorer). Measured
+ *	after a whole game, the keeper keeps about 60 bytes per cell on the heap: 28 for the
+ *	DStarLite search, 16 for the FrontierExplorer and 12 plus a quarter per stop for
+ *	the KeyRoutePlanner, so a 10000x10000 maze needs about 6GB of heap.
  */
 public class KeeperAI implements Keeper {
-	private MazeExplorer map = new MazeExplorer(); 
+	private MazeExplorer map; 
+	private FrontierExplorer frontier;
+	private ArrayList<Position> keysSeen = new ArrayList<Position>(); //Not found yet
+	private TeamMap team = null;
+	private TeamMap.Reader teamReader = null;
+	private int keysTaken = 0; //Visited by the team, read from the TeamMap
+	private int plans = 0; //Paths planned, for the metrics
 	private Position currentPos;
-	private A_Star pathFinder = new A_Star(map);
+	private PathFinder pathFinder;
+	private KeyRoutePlanner routePlanner;
+	private ArrayDeque<Position> route = null; //Keys not found yet and door, in order
+	private boolean pathPlanned = false; //Path given by the routePlanner
 	private ArrayList<Action> path = null;
+	private int pathIndex = 0; //Next action of the path
 	private boolean needPathUpdate = true;
 	private Position target = null;
 	private final boolean CAST_TO_MAZE_ALLOWED;
 	
+	/**
+	 * Keeper for the default maze size (40x40).
+	 */
 	public KeeperAI() {
-		String env = System.getenv("CAST_TO_MAZE_ALLOWED");
-		CAST_TO_MAZE_ALLOWED = env!=null && env.toLowerCase().equals("true"); 
+		this(40, 40);
+	}
+	
+	/**
+	 * 
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 */
+	public KeeperAI(int height, int width) {
+		this(height, width, castToMazeAllowed());
+	}
+	
+	/**
+	 * 
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 * @param pathFinders Creates the path finder for the map of the keeper.
+	 */
+	public KeeperAI(int height, int width, PathFinder.Factory pathFinders) {
+		this(height, width, castToMazeAllowed(), pathFinders);
+	}
+	
+	/**
+	 * 
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 * @param castToMazeAllowed True to read the key and door positions from the Maze,
+	 * regardless of the environment variable.
+	 */
+	public KeeperAI(int height, int width, boolean castToMazeAllowed) {
+		this(height, width, castToMazeAllowed, DStarLite::new);
+	}
+	
+	/**
+	 * 
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 * @param castToMazeAllowed True to read the key and door positions from the Maze,
+	 * regardless of the environment variable.
+	 * @param pathFinders Creates the path finder for the map of the keeper.
+	 */
+	public KeeperAI(int height, int width, boolean castToMazeAllowed, PathFinder.Factory pathFinders) {
+		CAST_TO_MAZE_ALLOWED = castToMazeAllowed;
+		map = new MazeExplorer(height, width);
+		frontier = new FrontierExplorer(map);
+		pathFinder = pathFinders.create(map);
+		routePlanner = new KeyRoutePlanner(map);
+	}
+	
+	/**
+	 * Keeper of a team sharing what they see.
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 * @param pathFinders Creates the path finder for the map of the keeper.
+	 * @param team Map shared by the keepers of the team.
+	 */
+	public KeeperAI(int height, int width, PathFinder.Factory pathFinders, TeamMap team) {
+		this(height, width, false, pathFinders);
+		this.team = team;
+		this.teamReader = team.reader();
 	}
 
+	private static boolean castToMazeAllowed() {
+		String env = System.getenv("CAST_TO_MAZE_ALLOWED");
+		return env!=null && env.toLowerCase().equals("true"); 
+	}
+	
 	/**
 	 * Perform a step in the maze.
 	 */
 	public Action act(Observable maze) {
 		currentPos = maze.getKeeperPosition();
+		explore(maze);
+		frontier.visit(currentPos);
+		keysSeen.remove(currentPos); //Taken now, or by another keeper
+		if(team != null) {
+			team.visit(currentPos);
+			readTeam();
+		}
 		
-		if(needPathUpdate) {
-			if(maze.getKeysFound()!=maze.getTotalNumberOfKeys()) {
-				if(CAST_TO_MAZE_ALLOWED && maze instanceof Maze)
-					target = getNearestKey((Maze)maze);
-				else
-					target = null;
-			}
-			else {
-				if(CAST_TO_MAZE_ALLOWED && maze instanceof Maze)
-					target = ((Maze)maze).getDoorPosition();
-				else if(map.doorFound())
-					target = map.getDoorPosition();
-				else
-					target = null;
-			}
+		if(needPathUpdate)
+			target = getTarget(maze);
+		
+		if(target == null) {
+			path = null;
+			needPathUpdate = true;
+			if(KeeperMetrics.ENABLED)
+				KeeperMetrics.EXPLORATION_STEPS.increment();
+			return frontier.explore(currentPos);
 		}
 		
-		if(target != null) {
+		if(target.equals(currentPos)) {
+			needPathUpdate = true;
+			return Action.DO_NOTHING; //In the door, while another keeper takes the last key
+		}
 		
-			if(needPathUpdate) {
-				try {
+		if(needPathUpdate) {
+			try {
+				path = routePlanner.canPathTo(target)? routePlanner.pathTo(currentPos, target) : null;
+				pathPlanned = path != null;
+				if(!pathPlanned)
 					path = pathFinder.solve(currentPos, target);
-					needPathUpdate = false;
-				}
-				catch(UnsolvableProblemException upe) {
-					System.err.println(upe);
-					return Action.DO_NOTHING;
-				}
+				pathIndex = 0;
+				needPathUpdate = false;
+				if(KeeperMetrics.ENABLED)
+					recordPlan();
+			}
+			catch(UnsolvableProblemException upe) {
+				System.err.println(upe);
+				return Action.DO_NOTHING;
 			}
 		}
 		
-		explore(maze);
+		long start = KeeperMetrics.ENABLED? System.nanoTime() : 0;
+		needPathUpdate = pathPlanned? routePlanner.needUpdate() : pathFinder.needUpdate();
+		if(KeeperMetrics.ENABLED)
+			KeeperMetrics.NEED_UPDATE_NANOS.record(System.nanoTime() - start);
+		if(pathIndex == path.size())
+			needPathUpdate = true;
 		
-		if(path!=null) {
-			needPathUpdate = pathFinder.needUpdate();
-			if(path.size()==0)
-				needPathUpdate = true;
-			
-			return needPathUpdate? act(maze):path.remove(0);
+		if(needPathUpdate)
+			return act(maze);
+		
+		Action next = path.get(pathIndex++);
+		if(KeeperMetrics.ENABLED && pathIndex == path.size() && maze.getKeysFound() == maze.getTotalNumberOfKeys())
+			KeeperMetrics.EPISODE_REPLANS.record(plans); //Last step to the door
+		return next;
+	}
+	
+	private void recordPlan() {
+		plans++;
+		KeeperMetrics.REPLANS.increment();
+		KeeperMetrics.PATH_LENGTH.record(path.size());
+		if(!pathPlanned) {
+			KeeperMetrics.EXPANDED.record(pathFinder.getExpanded());
+			KeeperMetrics.OPEN_SET_PEAK.record(pathFinder.getOpenSetPeak());
 		}
-		else
-			return map.explore(currentPos);
+	}
+	
+	/**
+	 * 
+	 * @param maze
+	 * @return Position to go to, null to keep exploring.
+	 */
+	private Position getTarget(Observable maze) {
+		if(CAST_TO_MAZE_ALLOWED && maze instanceof Maze) {
+			List<Position> keys = new ArrayList<Position>(((Maze)maze).getKeysPositions());
+			keys.removeAll(((Maze)maze).getKeysFoundPositions());
+			return getNextStop(keys, ((Maze)maze).getDoorPosition());
+		}
+		
+		int keysFound = team != null? keysTaken : maze.getKeysFound();
+		if(keysFound != maze.getTotalNumberOfKeys()) {
+			if(keysFound + keysSeen.size() < maze.getTotalNumberOfKeys())
+				return null;
+			return getNextStop(keysSeen, map.getDoorPosition());
+		}
+		
+		return map.doorFound()? map.getDoorPosition() : null;
 	}
 	
 	
@@ -92,32 +232,34 @@ public class KeeperAI implements Keeper {
     	
     	if(!map.needObservation(currentPos))
     		return;
+    	if(KeeperMetrics.ENABLED)
+    		KeeperMetrics.OBSERVATIONS.add(4);
     	
-    	HashMap<Position, Cell> observations = new HashMap<>(4, 1);
-    	
-    	Position observationPos = new Position(currentPos.getVertical()-1, currentPos.getHorizontal());
-    	observations.put(observationPos, maze.lookUp());
-    	
-    	observationPos = new Position(currentPos.getVertical()+1, currentPos.getHorizontal());
-    	observations.put(observationPos, maze.lookDown());
+    	int y = currentPos.getVertical();
+    	int x = currentPos.getHorizontal();
+    	Position[] positions = {new Position(y-1, x), new Position(y+1, x), new Position(y, x+1), new Position(y, x-1)};
+    	Cell[] observations = {maze.lookUp(), maze.lookDown(), maze.lookRight(), maze.lookLeft()};
     	
-    	observationPos = new Position(currentPos.getVertical(), currentPos.getHorizontal()+1);
-    	observations.put(observationPos, maze.lookRight());
-    	
-    	observationPos = new Position(currentPos.getVertical(), currentPos.getHorizontal()-1);
-    	observations.put(observationPos, maze.lookLeft());
-    	
-    	for(Position pos:observations.keySet()) {
-    		switch(observations.get(pos)) {
+    	for(int i=0;i<positions.length;i++) {
+    		Position pos = positions[i];
+    		switch(observations[i]) {
 				case DOOR:
 					map.setDoorPosition(pos);
+					frontier.seeOpen(pos);
+					publish(pos, TeamMap.DOOR);
 					break;
 				case KEY:
+					seeKey(pos);
+					frontier.seeOpen(pos);
+					publish(pos, TeamMap.KEY);
 					break;
 				case PATH:
+					frontier.seeOpen(pos);
+					publish(pos, TeamMap.OPEN);
 					break;
 				case WALL:
 					map.markWall(pos);
+					publish(pos, TeamMap.WALL);
 					break;
 				default:
 					break;
@@ -126,32 +268,65 @@ public class KeeperAI implements Keeper {
     	}
     }
     
+    private void publish(Position pos, int what) {
+    	if(team != null)
+    		team.publish(pos, what);
+    }
+    
     /**
-     * Get the nearest key in terms of Manhattan distance.
-     * @param maze
-     * @return Nearest key position.
+     * Replay the changes published since the last step, own ones included.
+     * Keys in cells already visited are gone.
      */
-    private Position getNearestKey(Maze maze) {
-    	List<Position> keys = maze.getKeysPositions();
-    	List<Position> found = maze.getKeysFoundPositions();
-    	Position pos = maze.getKeeperPosition();
-    	int minManhattan = Integer.MAX_VALUE;
-    	Position best = null;
-    	
-    	for(Position key:keys) {
-    		if(!found.contains(key)) {
-    			int manhattanDist = Math.abs(key.getHorizontal()-pos.getHorizontal())+
-    								Math.abs(key.getVertical()-pos.getVertical());
-    			if(manhattanDist<minManhattan) {
-    				minManhattan = manhattanDist;
-    				best = key;
-    			}
+    private void readTeam() {
+    	while(teamReader.next()) {
+    		Position pos = teamReader.cell();
+    		int added = teamReader.added();
+    		if((added & TeamMap.WALL) != 0)
+    			map.markWall(pos);
+    		if((added & TeamMap.OPEN) != 0)
+    			frontier.seeOpen(pos);
+    		if((added & TeamMap.DOOR) != 0)
+    			map.setDoorPosition(pos);
+    		if((added & TeamMap.KEY) != 0 && map.needObservation(pos))
+    			seeKey(pos);
+    		if((added & TeamMap.VISITED) != 0) {
+    			frontier.visit(pos);
+    			keysSeen.remove(pos);
+    			if((team.get(pos) & TeamMap.KEY) != 0)
+    				keysTaken++; //Keys are published before the keeper can walk into them
     		}
     	}
-    	
-    	return best;
     }
     
+    /**
+     * Remember a key not found yet, planning the route again if it is not in it.
+     */
+    private void seeKey(Position pos) {
+    	if(keysSeen.contains(pos))
+    		return;
+    	keysSeen.add(pos);
+    	if(route != null && !route.contains(pos)) {
+    		route = null;
+    		needPathUpdate = true;
+    	}
+    }
     
+    /**
+     * Get the next key in the planned route, or the door when every key has been found.
+     * Planning the order again as walls are found does not make the route shorter
+     * enough to pay for the distance fields, so the first plan is kept.
+     * @param keys Keys not found yet.
+     * @param door Door position, null if unknown.
+     * @return Next stop position, null if there are no keys left and the door is unknown.
+     */
+    private Position getNextStop(List<Position> keys, Position door) {
+    	if(route == null)
+    		route = new ArrayDeque<Position>(routePlanner.plan(currentPos, keys, door));
+    	
+    	while(!route.isEmpty() && !keys.contains(route.peekFirst()) && !route.peekFirst().equals(door))
+    		route.pollFirst(); //Taken, maybe on the way to another key
+    	
+    	return route.peekFirst();
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,428 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>Plans the order to collect every key and reach the door, for keepers
+ * which know where the keys are.
+ *
+ * <p>A BFS distance field is computed over the known map from every key and from
+ * the door, one pass per source. Cells are unit cost and moves can be reversed,
+ * so the distance from the keeper to a stop is read from the field of the stop,
+ * and no field is needed for the keeper. With the distances between every pair
+ * of stops the visiting order is solved exactly (Held-Karp bitmask DP) for up to
+ * EXACT_LIMIT keys, and with the nearest neighbor tour improved by 2-opt moves
+ * for more keys.
+ *
+ * <p>Fields only keep the distance modulo 3 of every cell, packed in 2 bits
+ * (the 4th value marks the cells which can not be reached): adjacent cells are at
+ * most one step apart from a stop, so the neighbor one step closer is the only one
+ * whose distance is one less modulo 3. The distances between the stops and from
+ * the keeper are read while the full distances are at hand, before packing.
+ *
+ * <p>The path to a stop follows its distance field downhill, so no search is
+ * needed. Walls marked after the plan only make distances longer, so a descent
+ * which avoids them is still a shortest path: every step goes to a cell one
+ * closer to the stop which is not a wall now. The field of a stop is only stale
+ * once a descent finds every such cell blocked, and fields are kept per stop, so
+ * the fields of the other stops are still followed. The planner listens to the
+ * MazeExplorer: if a wall is marked in the current path needUpdate() returns true.
+ */
+public class KeyRoutePlanner implements MazeExplorer.MapListener {
+	/**
+	 * Most keys ordered by the exact algorithm, its time grows as 2^keys*keys^2.
+	 */
+	public static final int EXACT_LIMIT = 12;
+	private static final int UNREACHABLE = Integer.MAX_VALUE/4;
+	private static final int FAR = 3; //Field value of the cells which can not be reached
+
+	private MazeExplorer map;
+	private int width;
+	private byte[][] fields = new byte[0][]; //Distance fields modulo 3, 4 cells per byte, one per stop
+	private boolean[] staleFields = new boolean[0]; //Blocked descents, one per stop
+	private int[] stopCells = new int[0];
+	private int stops = 0;
+	private int[] distances = new int[0]; //Between every pair of stops
+	private int[] startDistances = new int[0]; //From the keeper to every stop
+	private int[] queue;
+	private int[] distance; //Of every cell to the stop whose field is computed
+	private boolean stale = true;
+
+	private int[] onPath; //Path stamp of the cells in the current path
+	private int pathStamp = 0;
+	private boolean pathBlocked = false;
+
+	/**
+	 *
+	 * @param explorer Map to plan on. Changes in this map are tracked.
+	 */
+	public KeyRoutePlanner(MazeExplorer explorer) {
+		this.map = explorer;
+		explorer.addMapListener(this);
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		stale = true;
+		if(onPath != null && onPath[y*width + x] == pathStamp)
+			pathBlocked = true;
+	}
+
+	@Override
+	public void mapReplaced() {
+		stale = true;
+		Arrays.fill(staleFields, true);
+		pathBlocked = true;
+	}
+
+	/**
+	 *
+	 * @return True if a wall has been marked since the last plan.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 *
+	 * @return True if a wall has been marked in the last path.
+	 */
+	public boolean needUpdate() {
+		return pathBlocked;
+	}
+
+	/**
+	 *
+	 * @param target Position to evaluate.
+	 * @return True if target is a stop of the last plan and its field is not stale.
+	 */
+	public boolean canPathTo(Position target) {
+		int stop = stopIndex(target);
+		return stop >= 0 && !staleFields[stop];
+	}
+
+	/**
+	 * Compute the distance fields and the best order to collect the keys.
+	 * @param start Keeper position.
+	 * @param keys Keys to collect.
+	 * @param door Door position, null to end at the last key.
+	 * @return Keys in the order they should be collected, followed by the door.
+	 */
+	public List<Position> plan(Position start, List<Position> keys, Position door) {
+		int size = map.getWidth()*map.getHeight();
+		width = map.getWidth();
+		stops = keys.size() + (door == null? 0 : 1);
+
+		if(queue == null || queue.length != size) {
+			queue = new int[size];
+			distance = new int[size];
+			onPath = new int[size];
+			fields = new byte[0][];
+		}
+		if(fields.length < stops) {
+			byte[][] grown = Arrays.copyOf(fields, stops);
+			for(int i=fields.length;i<stops;i++)
+				grown[i] = new byte[(size + 3) >>> 2];
+			fields = grown;
+			stopCells = new int[stops];
+			staleFields = new boolean[stops];
+			startDistances = new int[stops];
+		}
+		Arrays.fill(staleFields, false);
+		if(distances.length < stops*stops)
+			distances = new int[stops*stops];
+
+		for(int i=0;i<stops;i++) {
+			Position stop = i < keys.size()? keys.get(i) : door;
+			stopCells[i] = stop.getVertical()*width + stop.getHorizontal();
+		}
+		int startCell = start.getVertical()*width + start.getHorizontal();
+		for(int to=0;to<stops;to++) {
+			int reached = distanceField(stopCells[to]);
+			for(int from=0;from<stops;from++)
+				distances[from*stops + to] = distance[stopCells[from]];
+			startDistances[to] = distance[startCell];
+			pack(fields[to], reached);
+		}
+		stale = false;
+
+		int[] order = keys.size() <= EXACT_LIMIT?
+				exactOrder(keys.size(), door != null) :
+				heuristicOrder(keys.size(), door != null);
+
+		List<Position> route = new ArrayList<Position>(stops);
+		for(int key:order)
+			route.add(keys.get(key));
+		if(door != null)
+			route.add(door);
+		return route;
+	}
+
+	/**
+	 * Follow the distance field of a planned stop, around the walls marked since the plan.
+	 * @param start Keeper position.
+	 * @param target A stop of the last plan.
+	 * @return Actions the Keeper should take to reach the target, or null if
+	 * walls marked since the plan block the descent: the field is stale then.
+	 */
+	public ArrayList<Action> pathTo(Position start, Position target) throws UnsolvableProblemException {
+		int stop = stopIndex(target);
+		int cell = start.getVertical()*width + start.getHorizontal();
+		if(stop < 0 || get(fields[stop], cell) == FAR)
+			throw new UnsolvableProblemException();
+
+		byte[] field = fields[stop];
+		int size = width*map.getHeight();
+		int goal = stopCells[stop];
+		ArrayList<Action> path = new ArrayList<Action>();
+		pathStamp++;
+		pathBlocked = false;
+
+		while(cell != goal) {
+			int x = cell % width;
+			int y = cell / width;
+			int closer = (get(field, cell) + 2) % 3;
+			int next;
+			Action move;
+
+			if(y > 0 && get(field, cell - width) == closer && map.canVisit(y-1, x)) {
+				next = cell - width;
+				move = Action.GO_UP;
+			}
+			else if(cell + width < size && get(field, cell + width) == closer && map.canVisit(y+1, x)) {
+				next = cell + width;
+				move = Action.GO_DOWN;
+			}
+			else if(x > 0 && get(field, cell - 1) == closer && map.canVisit(y, x-1)) {
+				next = cell - 1;
+				move = Action.GO_LEFT;
+			}
+			else if(x < width-1 && get(field, cell + 1) == closer && map.canVisit(y, x+1)) {
+				next = cell + 1;
+				move = Action.GO_RIGHT;
+			}
+			else {
+				staleFields[stop] = true;
+				return null;
+			}
+
+			path.add(move);
+			onPath[next] = pathStamp;
+			cell = next;
+		}
+
+		return path;
+	}
+
+	private int stopIndex(Position target) {
+		int cell = target.getVertical()*width + target.getHorizontal();
+		for(int i=0;i<stops;i++)
+			if(stopCells[i] == cell)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Breadth first search from a cell over every cell which can be visited,
+	 * leaving the distance of every cell in distance.
+	 * @return Cells reached, in the queue.
+	 */
+	private int distanceField(int source) {
+		int[] field = distance;
+		int height = map.getHeight();
+		Arrays.fill(field, UNREACHABLE);
+		field[source] = 0;
+		queue[0] = source;
+		int head = 0;
+		int tail = 1;
+
+		while(head < tail) {
+			int cell = queue[head++];
+			int x = cell % width;
+			int y = cell / width;
+			int next = field[cell] + 1;
+
+			if(y > 0 && field[cell - width] == UNREACHABLE && map.canVisit(y-1, x)) {
+				field[cell - width] = next;
+				queue[tail++] = cell - width;
+			}
+			if(y < height-1 && field[cell + width] == UNREACHABLE && map.canVisit(y+1, x)) {
+				field[cell + width] = next;
+				queue[tail++] = cell + width;
+			}
+			if(x > 0 && field[cell - 1] == UNREACHABLE && map.canVisit(y, x-1)) {
+				field[cell - 1] = next;
+				queue[tail++] = cell - 1;
+			}
+			if(x < width-1 && field[cell + 1] == UNREACHABLE && map.canVisit(y, x+1)) {
+				field[cell + 1] = next;
+				queue[tail++] = cell + 1;
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Keep the distances of the last field modulo 3, FAR in the cells not reached.
+	 * @param reached Cells reached, in the queue.
+	 */
+	private void pack(byte[] field, int reached) {
+		Arrays.fill(field, (byte)0xFF);
+		for(int i=0;i<reached;i++) {
+			int cell = queue[i];
+			int shift = (cell & 3) << 1;
+			field[cell >>> 2] ^= (FAR ^ distance[cell] % 3) << shift;
+		}
+	}
+
+	private static int get(byte[] field, int cell) {
+		return field[cell >>> 2] >>> ((cell & 3) << 1) & 3;
+	}
+
+	private int distance(int fromKey, int toKey) {
+		return distances[fromKey*stops + toKey];
+	}
+
+	private int toDoor(int key, int keys, boolean door) {
+		return door? distances[key*stops + keys] : 0;
+	}
+
+	/**
+	 * Held-Karp: best[visited][last] is the shortest walk from the keeper
+	 * through every key in visited ending at last.
+	 */
+	private int[] exactOrder(int keys, boolean door) {
+		if(keys == 0)
+			return new int[0];
+
+		int sets = 1 << keys;
+		int[] best = new int[sets*keys];
+		int[] into = new int[keys*keys]; //Distances to each key from every key, next to each other
+		for(int to=0;to<keys;to++)
+			for(int from=0;from<keys;from++)
+				into[to*keys + from] = distances[from*stops + to];
+
+		for(int key=0;key<keys;key++)
+			best[(1 << key)*keys + key] = startDistances[key];
+
+		//Only the keys in each set are visited, iterating over its bits
+		for(int visited=1;visited<sets;visited++) {
+			if((visited & (visited-1)) == 0)
+				continue; //Single key, from the keeper
+			for(int lastKeys=visited;lastKeys!=0;lastKeys&=lastKeys-1) {
+				int last = Integer.numberOfTrailingZeros(lastKeys);
+				int before = (visited & ~(1 << last))*keys;
+				int to = last*keys;
+				int cost = UNREACHABLE;
+				for(int keysBefore=visited & ~(1 << last);keysBefore!=0;keysBefore&=keysBefore-1) {
+					int key = Integer.numberOfTrailingZeros(keysBefore);
+					cost = Math.min(cost, best[before + key] + into[to + key]);
+				}
+				best[visited*keys + last] = cost;
+			}
+		}
+
+		int all = sets - 1;
+		int last = 0;
+		long bestCost = Long.MAX_VALUE;
+		for(int key=0;key<keys;key++) {
+			long cost = (long)best[all*keys + key] + toDoor(key, keys, door);
+			if(cost < bestCost) {
+				bestCost = cost;
+				last = key;
+			}
+		}
+
+		if(bestCost >= UNREACHABLE)
+			return heuristicOrder(keys, door); //Some key can not be reached, any order will do
+
+		//Walk back through the keys whose walk gives the best cost of each set
+		int[] order = new int[keys];
+		for(int visited=all, i=keys-1;i>=0;i--) {
+			order[i] = last;
+			int cost = best[visited*keys + last];
+			visited &= ~(1 << last);
+			for(int keysBefore=visited;keysBefore!=0;keysBefore&=keysBefore-1) {
+				int key = Integer.numberOfTrailingZeros(keysBefore);
+				if(best[visited*keys + key] + into[last*keys + key] == cost) {
+					last = key;
+					break;
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Nearest neighbor tour from the keeper, then 2-opt moves (reversing a
+	 * part of the tour) while any of them makes it shorter.
+	 */
+	private int[] heuristicOrder(int keys, boolean door) {
+		int[] order = new int[keys];
+		boolean[] taken = new boolean[keys];
+
+		for(int i=0;i<keys;i++) {
+			int nearest = -1;
+			for(int key=0;key<keys;key++) {
+				if(taken[key])
+					continue;
+				int distance = i == 0? startDistances[key] : distance(order[i-1], key);
+				if(nearest < 0 || distance < (i == 0? startDistances[nearest] : distance(order[i-1], nearest)))
+					nearest = key;
+			}
+			order[i] = nearest;
+			taken[nearest] = true;
+		}
+
+		boolean improved = true;
+		while(improved) {
+			improved = false;
+			for(int i=0;i<keys-1;i++) {
+				for(int j=i+1;j<keys;j++) {
+					//Replace the edges before i and after j
+					long before = edgeBefore(order, i) + edgeAfter(order, j, keys, door);
+					long after = edgeBefore(order, j, i) + edgeAfter(order, i, j, keys, door);
+					if(after < before) {
+						for(int a=i, b=j;a<b;a++, b--) {
+							int key = order[a];
+							order[a] = order[b];
+							order[b] = key;
+						}
+						improved = true;
+					}
+				}
+			}
+		}
+
+		return order;
+	}
+
+	private long edgeBefore(int[] order, int i) {
+		return edgeBefore(order, i, i);
+	}
+
+	/**
+	 * Distance from the stop before position "at" to the key in position i.
+	 */
+	private long edgeBefore(int[] order, int i, int at) {
+		return at == 0? startDistances[order[i]] : distance(order[at-1], order[i]);
+	}
+
+	private long edgeAfter(int[] order, int j, int keys, boolean door) {
+		return edgeAfter(order, j, j, keys, door);
+	}
+
+	/**
+	 * Distance from the key in position j to the stop after position "at".
+	 */
+	private long edgeAfter(int[] order, int j, int at, int keys, boolean door) {
+		return at == keys-1? toDoor(order[j], keys, door) : distance(order[j], order[at+1]);
+	}
+}
@@ -0,0 +1,202 @@
+package tws.keeper.solution;
+
+import java.util.Arrays;
+
+/**
+ *
+ * <p>Landmark (ALT) heuristic: the distances from a few landmark cells to every
+ * cell are found once with breadth first searches, and the triangle inequality
+ * gives a lower bound of the distance between any two cells:
+ * |d(L, target) - d(L, cell)|. The estimate is the highest bound of all the
+ * landmarks, and the Manhattan distance when it is higher. In twisty mazes it is
+ * much closer to the real distance than the Manhattan distance alone.
+ *
+ * <p>Landmarks are chosen far from each other: every one is the cell farthest
+ * from the ones already chosen. Distances are kept as chars, 2 bytes per cell and
+ * landmark, saturated at the highest char, and the distances of a cell to every
+ * landmark are next to each other, so an estimate reads a single cache line.
+ *
+ * <p>Tables are rebuilt lazily, in the search after enough walls have been marked
+ * or after the map is replaced. Marking a wall only makes distances longer, so
+ * the distances of the old map still give admissible and consistent estimates,
+ * only less accurate ones. Cells no landmark reaches are estimated by the
+ * Manhattan distance.
+ */
+public class Landmarks implements Heuristic, MazeExplorer.MapListener {
+	/**
+	 * Landmarks if no count is given.
+	 */
+	public static final int DEFAULT_COUNT = 8;
+	private static final char UNREACHABLE = Character.MAX_VALUE;
+	private static final int REBUILD_FRACTION = 32; //Rebuilt after walls in 1/32 of the cells
+
+	private MazeExplorer map;
+	private final int count;
+
+	private int width = 0;
+	private int height;
+	private int built = 0; //Landmarks found in the map, below count if it has fewer open cells
+	private char[] distances; //count per cell, landmark after landmark
+	private int[] targetDistances;
+	private int[] queue;
+	private int walls = 0; //Marked since the tables were built
+	private boolean replaced = true;
+
+	/**
+	 *
+	 * @param explorer Map to measure. Changes in this map are tracked.
+	 */
+	public Landmarks(MazeExplorer explorer) {
+		this(explorer, DEFAULT_COUNT);
+	}
+
+	/**
+	 *
+	 * @param explorer Map to measure. Changes in this map are tracked.
+	 * @param count Landmarks to choose, at least 1.
+	 */
+	public Landmarks(MazeExplorer explorer, int count) {
+		if(count < 1)
+			throw new IllegalArgumentException("Landmark count must be at least 1: " + count);
+		this.map = explorer;
+		this.count = count;
+		this.targetDistances = new int[count];
+		explorer.addMapListener(this);
+	}
+
+	@Override
+	public void wallMarked(int y, int x) {
+		walls++;
+	}
+
+	@Override
+	public void mapReplaced() {
+		replaced = true;
+	}
+
+	/**
+	 * Rebuild the tables if they are too old, and read the distances of the target.
+	 */
+	@Override
+	public void prepare(int targetX, int targetY) {
+		int size = map.getWidth()*map.getHeight();
+		if(replaced || width != map.getWidth() || height != map.getHeight() || walls >= Math.max(1, size/REBUILD_FRACTION))
+			build();
+
+		int base = (targetY*width + targetX)*count;
+		for(int k=0;k<built;k++) {
+			char distance = distances[base + k];
+			targetDistances[k] = distance == UNREACHABLE? -1 : distance;
+		}
+	}
+
+	@Override
+	public int estimate(int x, int y, int targetX, int targetY) {
+		int h = Math.abs(targetX-x) + Math.abs(targetY-y);
+		int base = (y*width + x)*count;
+		for(int k=0;k<built;k++) {
+			int target = targetDistances[k];
+			char distance = distances[base + k];
+			if(target < 0 || distance == UNREACHABLE)
+				continue;
+			int bound = Math.abs(target - distance);
+			if(bound > h)
+				h = bound;
+		}
+		return h;
+	}
+
+	@Override
+	public long getMemory() {
+		return distances == null? 0 : (long)distances.length*Character.BYTES + (long)queue.length*Integer.BYTES;
+	}
+
+	/**
+	 * Choose the landmarks and find their distances to every cell.
+	 */
+	private void build() {
+		width = map.getWidth();
+		height = map.getHeight();
+		int size = width*height;
+		if(distances == null || distances.length != size*count) {
+			distances = new char[size*count];
+			queue = new int[size];
+		}
+		walls = 0;
+		replaced = false;
+		built = 0;
+
+		int first = 0;
+		while(first < size && !map.canVisit(first / width, first % width))
+			first++;
+		if(first == size)
+			return;
+
+		//The first landmark is the cell farthest from any open cell, then the farthest from the landmarks
+		char[] nearest = new char[size];
+		int landmark = search(first, 0, null);
+		while(built < count) {
+			search(landmark, built, nearest);
+			built++;
+
+			landmark = -1;
+			int farthest = 0;
+			for(int cell=0;cell<size;cell++) {
+				if(nearest[cell] != UNREACHABLE && nearest[cell] > farthest) {
+					farthest = nearest[cell];
+					landmark = cell;
+				}
+			}
+			if(landmark < 0)
+				break; //Every open cell is a landmark
+		}
+	}
+
+	/**
+	 * Breadth first search from a cell, keeping the distances in the slot of a landmark.
+	 * @param nearest If not null, lowered to the distances found.
+	 * @return The last cell reached, one of the farthest.
+	 */
+	private int search(int source, int slot, char[] nearest) {
+		for(int i=slot;i<distances.length;i+=count)
+			distances[i] = UNREACHABLE;
+
+		int head = 0;
+		int tail = 0;
+		distances[source*count + slot] = 0;
+		queue[tail++] = source;
+		while(head < tail) {
+			int cell = queue[head++];
+			char next = (char)Math.min(distances[cell*count + slot] + 1, UNREACHABLE - 1);
+			int x = cell % width;
+			int y = cell / width;
+			if(y > 0)
+				tail = reach(cell - width, y-1, x, slot, next, tail);
+			if(y < height-1)
+				tail = reach(cell + width, y+1, x, slot, next, tail);
+			if(x > 0)
+				tail = reach(cell - 1, y, x-1, slot, next, tail);
+			if(x < width-1)
+				tail = reach(cell + 1, y, x+1, slot, next, tail);
+		}
+
+		if(nearest != null) {
+			if(slot == 0)
+				Arrays.fill(nearest, UNREACHABLE);
+			for(int i=0;i<tail;i++) {
+				int cell = queue[i];
+				nearest[cell] = (char)Math.min(nearest[cell], distances[cell*count + slot]);
+			}
+		}
+		return queue[tail-1];
+	}
+
+	private int reach(int cell, int y, int x, int slot, char distance, int tail) {
+		int index = cell*count + slot;
+		if(distances[index] != UNREACHABLE || !map.canVisit(y, x))
+			return tail;
+		distances[index] = distance;
+		queue[tail++] = cell;
+		return tail;
+	}
+}
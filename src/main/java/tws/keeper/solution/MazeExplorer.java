@@ -1,7 +1,9 @@
 package tws.keeper.solution;
 
-import java.util.EnumMap;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import tws.keeper.metrics.KeeperMetrics;
+import tws.keeper.model.CellStore;
 import tws.keeper.model.Position;
 import tws.keeper.model.Action;
 
@@ -13,7 +15,7 @@ import tws.keeper.model.Action;
  * is at certain position in the maze, the exploration algorithm return the action
  * the keeper should do as it is described bellow.</p>
  * <ul>
- *	<li>Map is represented by an array of cell states.</li>
+ *	<li>Map is represented by a grid of cell states, packed as bits (see CellStateGrid).</li>
  * 	<li>In the beginning the whole map is set to UNEXPLORED.</li>
  *  <li>For every step in the algorithm if an adjacent cell is UNEXPLORED that is 
  *  marked as the next cell to explore.</li>
@@ -40,29 +42,77 @@ public class MazeExplorer {
 		WALL
 	}
 	
-	private EnumSet<CellState>[][] mazeMap;
+	/**
+	 * Receives the changes in the map, e.g. to repair a search 
+	 * instead of running it again from scratch.
+	 */
+	public interface MapListener {
+		/**
+		 * A cell which could be visited has been marked as a wall.
+		 * @param y Vertical coordinate of the cell.
+		 * @param x Horizontal coordinate of the cell.
+		 */
+		void wallMarked(int y, int x);
+		
+		/**
+		 * The whole map has been replaced.
+		 */
+		default void mapReplaced() {
+		}
+	}
+	
+	/*
+	 * Moves in the order they are evaluated by the exploring algorithm,
+	 * with their offsets and the cell states they set and look for.
+	 */
+	private static final Action[] MOVES = {Action.GO_UP, Action.GO_DOWN, Action.GO_LEFT, Action.GO_RIGHT};
+	private static final int[] MOVE_DX = {0, 0, -1, 1};
+	private static final int[] MOVE_DY = {-1, 1, 0, 0};
+	private static final byte[] STRAIGHT_MOVE = {
+			CellStateGrid.mask(CellState.EXPLORING_UP),
+			CellStateGrid.mask(CellState.EXPLORING_DOWN),
+			CellStateGrid.mask(CellState.EXPLORING_LEFT),
+			CellStateGrid.mask(CellState.EXPLORING_RIGHT)
+	};
+	private static final byte[] REVERSE_MOVE = {
+			CellStateGrid.mask(CellState.EXPLORING_DOWN),
+			CellStateGrid.mask(CellState.EXPLORING_UP),
+			CellStateGrid.mask(CellState.EXPLORING_RIGHT),
+			CellStateGrid.mask(CellState.EXPLORING_LEFT)
+	};
+	private static final byte UNEXPLORED = CellStateGrid.mask(CellState.UNEXPLORED);
+	private static final byte EXPLORED = CellStateGrid.mask(CellState.EXPLORED);
+	private static final byte WALL = CellStateGrid.mask(CellState.WALL);
+	
+	private CellStateGrid mazeMap;
 	private Position doorPosition = null;
-	private EnumMap<Action, CellState> straightMove = new EnumMap<Action, CellState>(Action.class);
-	private EnumMap<Action, CellState> reverseMove = new EnumMap<Action, CellState>(Action.class);
+	private ArrayList<MapListener> listeners = new ArrayList<MapListener>();
 	
 	/**
-	 * 
+	 * Create an unexplored map of the default maze size (40x40).
 	 */
 	public MazeExplorer() {
-		mazeMap = new EnumSet[40][40];
-		for(EnumSet<CellState>[] row:mazeMap)
-			for(int i=0;i<row.length;i++)
-				row[i] = EnumSet.of(CellState.UNEXPLORED);
-		
-		straightMove.put(Action.GO_UP, CellState.EXPLORING_UP);
-		straightMove.put(Action.GO_DOWN, CellState.EXPLORING_DOWN);
-		straightMove.put(Action.GO_RIGHT, CellState.EXPLORING_RIGHT);
-		straightMove.put(Action.GO_LEFT, CellState.EXPLORING_LEFT);
-		
-		reverseMove.put(Action.GO_UP, CellState.EXPLORING_DOWN);
-		reverseMove.put(Action.GO_DOWN, CellState.EXPLORING_UP);
-		reverseMove.put(Action.GO_RIGHT, CellState.EXPLORING_LEFT);
-		reverseMove.put(Action.GO_LEFT, CellState.EXPLORING_RIGHT);
+		this(40, 40);
+	}
+	
+	/**
+	 * Create an unexplored map, off the heap if the JVM is started 
+	 * with -Dkeeper.offHeap=true.
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 */
+	public MazeExplorer(int height, int width) {
+		this(height, width, CellStore.OFF_HEAP);
+	}
+	
+	/**
+	 * Create an unexplored map.
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 * @param offHeap True to keep the map in a direct buffer, for very large mazes.
+	 */
+	public MazeExplorer(int height, int width, boolean offHeap) {
+		mazeMap = new CellStateGrid(height, width, CellState.UNEXPLORED, offHeap);
 	}
 	
 	/**
@@ -70,7 +120,41 @@ public class MazeExplorer {
 	 * @param pos Position of the cell.
 	 */
 	public void markWall(Position pos) {
-		mazeMap[pos.getVertical()][pos.getHorizontal()]= EnumSet.of(CellState.WALL);
+		int x = pos.getHorizontal();
+		int y = pos.getVertical();
+		int cell = y*mazeMap.getWidth() + x;
+		boolean wasWall = (mazeMap.get(cell) & WALL) != 0;
+		
+		mazeMap.set(cell, WALL);
+		
+		if(!wasWall)
+			for(MapListener listener:listeners)
+				listener.wallMarked(y, x);
+	}
+	
+	/**
+	 * Mark a cell as explored, for explorers other than explore().
+	 * @param pos Position of the cell.
+	 */
+	public void markExplored(Position pos) {
+		int cell = pos.getVertical()*mazeMap.getWidth() + pos.getHorizontal();
+		mazeMap.set(cell, (byte)((mazeMap.get(cell) & ~UNEXPLORED) | EXPLORED));
+	}
+	
+	/**
+	 * Register a listener to be notified of the map changes.
+	 * @param listener Listener to add.
+	 */
+	public void addMapListener(MapListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * 
+	 * @param listener Listener to remove.
+	 */
+	public void removeMapListener(MapListener listener) {
+		listeners.remove(listener);
 	}
 	
 	/**
@@ -87,36 +171,37 @@ public class MazeExplorer {
 	 * @return Next Action in the exploration algorithm.
 	 */
 	public Action explore(Position pos) {
+		if(KeeperMetrics.ENABLED)
+			KeeperMetrics.EXPLORATION_STEPS.increment();
 		Action nextMove = Action.DO_NOTHING;
 		int x = pos.getHorizontal();
 		int y = pos.getVertical();
+		int width = mazeMap.getWidth();
 		
+		if(!mazeMap.isInside(y-1, x-1) || !mazeMap.isInside(y+1, x+1))
+			throw new ArrayIndexOutOfBoundsException("No adjacent cells to explore at " + pos);
 		
-		EnumMap<Action, EnumSet<CellState>> moveOptions = new EnumMap<Action, EnumSet<CellState>>(Action.class);
-		moveOptions.put(Action.GO_UP, mazeMap[y-1][x]);
-		moveOptions.put(Action.GO_DOWN, mazeMap[y+1][x]);
-		moveOptions.put(Action.GO_RIGHT, mazeMap[y][x+1]);
-		moveOptions.put(Action.GO_LEFT, mazeMap[y][x-1]);
-		
-		mazeMap[y][x].remove(CellState.UNEXPLORED);
+		int cell = y*width + x;
+		byte state = (byte)(mazeMap.get(cell) & ~UNEXPLORED);
 		
-		for(Action move:moveOptions.keySet()) {
-			EnumSet<CellState> moveResult = moveOptions.get(move);
+		for(int i=0;i<MOVES.length;i++) {
+			byte moveResult = mazeMap.get(cell + MOVE_DY[i]*width + MOVE_DX[i]);
 			
-			if(moveResult.contains(CellState.UNEXPLORED)) {
-				nextMove = move;
-				mazeMap[y][x].add(straightMove.get(nextMove));
-				mazeMap[y][x].remove(CellState.EXPLORED);
+			if((moveResult & UNEXPLORED) != 0) {
+				nextMove = MOVES[i];
+				state = (byte)((state | STRAIGHT_MOVE[i]) & ~EXPLORED);
 				break;
 			}
 			
-			if(moveResult.contains(reverseMove.get(move))) {
-				nextMove = move;
-				mazeMap[y][x].add(CellState.EXPLORED);
+			if((moveResult & REVERSE_MOVE[i]) != 0) {
+				nextMove = MOVES[i];
+				state |= EXPLORED;
 			}
 			
 		}
 		
+		mazeMap.set(cell, state);
+		
 		return nextMove;
 	}
 	
@@ -142,13 +227,44 @@ public class MazeExplorer {
 	 * @return True if position can be reached.
 	 */
 	public boolean canVisit(Position pos) {
-		int x = pos.getHorizontal();
-		int y = pos.getVertical();
-		
-		if(x<0 || y<0 || x>=mazeMap[0].length || y>=mazeMap.length)
+		return canVisit(pos.getVertical(), pos.getHorizontal());
+	}
+	
+	/**
+	 * 
+	 * @param y Vertical coordinate of the cell.
+	 * @param x Horizontal coordinate of the cell.
+	 * @return True if position can be reached.
+	 */
+	public boolean canVisit(int y, int x) {
+		if(!mazeMap.isInside(y, x))
 			return false;
 		
-		return !mazeMap[pos.getVertical()][pos.getHorizontal()].contains(CellState.WALL);
+		return (mazeMap.get(y*mazeMap.getWidth() + x) & WALL) == 0;
+	}
+	
+	/**
+	 * 
+	 * @return Width of the map.
+	 */
+	public int getWidth() {
+		return mazeMap.getWidth();
+	}
+	
+	/**
+	 * 
+	 * @return Height of the map.
+	 */
+	public int getHeight() {
+		return mazeMap.getHeight();
+	}
+	
+	/**
+	 * 
+	 * @return True if the map is in a direct buffer.
+	 */
+	public boolean isOffHeap() {
+		return mazeMap.isOffHeap();
 	}
 	
 	/**
@@ -158,14 +274,27 @@ public class MazeExplorer {
 	 * @return True if it needs to be explored.
 	 */
 	public boolean needObservation(Position pos) {
-		return mazeMap[pos.getVertical()][pos.getHorizontal()].contains(CellState.UNEXPLORED);
+		return (mazeMap.get(pos.getVertical()*mazeMap.getWidth() + pos.getHorizontal()) & UNEXPLORED) != 0;
 	}
 	
 	/**
 	 * 
+	 * @param pos Position of the cell.
+	 * @return States of the cell.
+	 */
+	public EnumSet<CellState> getCellStates(Position pos) {
+		return mazeMap.states(pos.getVertical()*mazeMap.getWidth() + pos.getHorizontal());
+	}
+	
+	/**
+	 * Replace the map. States are copied into a packed grid, 
+	 * changes in the given array are not reflected.
 	 * @param mazeMap
 	 */
 	public void setMazeMap(EnumSet<CellState>[][] mazeMap) {
-		this.mazeMap = mazeMap;
+		this.mazeMap = new CellStateGrid(mazeMap);
+		
+		for(MapListener listener:listeners)
+			listener.mapReplaced();
 	}
 }
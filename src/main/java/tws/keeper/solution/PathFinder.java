@@ -0,0 +1,102 @@
+package tws.keeper.solution;
+
+import java.util.ArrayList;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+
+/**
+ *
+ * <p>Search of a path from the keeper to a target over the map of a MazeExplorer.
+ *
+ * <p>Implementations trade time, memory and path length in different ways, and
+ * report the work done by the last search so the trade-off can be measured:
+ * <ul>
+ * <li>DStarLite repairs the previous search as walls are found (default).
+ * <li>A_Star searches from scratch, optionally weighted: paths are at most
+ * weight times longer than the shortest one, expanding fewer cells. With
+ * Landmarks as heuristic it expands fewer cells in twisty mazes.
+ * <li>BidirectionalA_Star searches from both ends at once.
+ * <li>CorridorGraph expands junctions instead of cells.
+ * <li>IDA_Star keeps only the current path and a bounded table of costs,
+ * for maps of at most IDA_Star.MAX_CELLS cells as it searches cells again.
+ * <li>HierarchicalA_Star searches between the entrances of clusters of cells,
+ * for large maps. Paths are close to the shortest ones.
+ * </ul>
+ */
+public interface PathFinder {
+
+	/**
+	 * Finds a path to reach the target.
+	 * @param start Keeper position.
+	 * @param target Target position.
+	 * @return Actions the Keeper should take to reach the target.
+	 */
+	ArrayList<Action> solve(Position start, Position target) throws UnsolvableProblemException;
+
+	/**
+	 *
+	 * @return True if there is no path or the last path is blocked.
+	 */
+	boolean needUpdate();
+
+	/**
+	 *
+	 * @return Nodes expanded by the last search.
+	 */
+	int getExpanded();
+
+	/**
+	 *
+	 * @return Most bytes of search state held during the last search.
+	 */
+	long getPeakMemory();
+
+	/**
+	 *
+	 * @return Most nodes in the open set at once during the last search, 0 without open set.
+	 */
+	int getOpenSetPeak();
+
+	/**
+	 * Creates the path finder of a keeper for its map.
+	 */
+	@FunctionalInterface
+	interface Factory {
+		PathFinder create(MazeExplorer map);
+	}
+
+	/**
+	 *
+	 * @param name One of d-star-lite, a-star, weighted-a-star, bidirectional-a-star,
+	 * corridors, ida-star, hpa-star or alt-a-star.
+	 * @param weight Bound of the path length over the shortest one, for weighted-a-star.
+	 * @return Factory of the named path finder.
+	 * @throws IllegalArgumentException If the name is unknown or the weight is below 1.
+	 */
+	static Factory named(String name, double weight) {
+		switch(name) {
+			case "d-star-lite":
+				return DStarLite::new;
+			case "a-star":
+				return A_Star::new;
+			case "weighted-a-star":
+				if(!(weight >= 1))
+					throw new IllegalArgumentException("Weight must be at least 1: " + weight);
+				return map -> new A_Star(map, weight);
+			case "bidirectional-a-star":
+				return BidirectionalA_Star::new;
+			case "corridors":
+				return CorridorGraph::new;
+			case "ida-star":
+				return IDA_Star::new;
+			case "hpa-star":
+				return HierarchicalA_Star::new;
+			case "alt-a-star":
+				return map -> new A_Star(map, 1, new Landmarks(map));
+			default:
+				throw new IllegalArgumentException("Unknown path finder: " + name);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package tws.keeper.solution;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import tws.keeper.model.Position;
+
+/**
+ *
+ * <p>Map of a maze shared by a team of keepers playing it at once: the walls,
+ * open cells, keys and door seen, and the cells visited, by any of them.
+ *
+ * <p>Every cell keeps its states as the bits of a byte, four cells packed in
+ * each int of an AtomicIntegerArray, and states are added with a compare and
+ * set of the int, so keepers publish without locks and every state of a cell is
+ * published once. A cell is either a wall or open, and the first keeper seeing
+ * it tells which: an open cell seen again as a key or a door, or a key seen
+ * again after being taken, is not published again.
+ *
+ * <p>Every state added is also appended to a log: its slot is taken incrementing
+ * a counter and written with the cell and the bits added, which is never 0, so a
+ * slot still 0 is being written. A cell is logged at most twice, when it is seen
+ * and when it is visited. Each keeper reads the log with its own Reader, up to
+ * the first slot not written yet, and replays it in its own MazeExplorer. The
+ * MazeExplorer of a keeper is then a snapshot of the team map at some point of
+ * the log, which only changes when the keeper reads, between two searches: its
+ * path finder (and needUpdate) never sees the map changing under a search, and
+ * its map listeners receive the walls found by the other keepers as they are read.
+ */
+public class TeamMap {
+	public static final int WALL = 1;
+	public static final int OPEN = 2;
+	public static final int KEY = 4;
+	public static final int DOOR = 8;
+	public static final int VISITED = 16;
+
+	private static final int STATE_BITS = 5;
+	private static final int SEEN = WALL | OPEN; //Set the first time a cell is seen
+
+	private final int width;
+	private final int height;
+	private final AtomicIntegerArray cells; //Byte of states per cell, 4 cells per int
+	private final AtomicIntegerArray log; //cell << STATE_BITS | states added
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 *
+	 * @param height Height of the maze.
+	 * @param width Width of the maze.
+	 */
+	public TeamMap(int height, int width) {
+		if((long)height*width > 1 << (Integer.SIZE - 1 - STATE_BITS))
+			throw new IllegalArgumentException("Map too large to log: " + height + "x" + width);
+		this.width = width;
+		this.height = height;
+		cells = new AtomicIntegerArray((height*width + 3) >>> 2);
+		log = new AtomicIntegerArray(2*height*width);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Publish what a keeper has seen in a cell, if nobody published it before.
+	 * Keys and doors are open cells.
+	 * @param pos Position of the cell.
+	 * @param what WALL, OPEN, KEY or DOOR.
+	 * @return True if the cell had not been seen.
+	 */
+	public boolean publish(Position pos, int what) {
+		if(what != WALL)
+			what |= OPEN;
+		return add(pos.getVertical()*width + pos.getHorizontal(), what, SEEN);
+	}
+
+	/**
+	 * Publish a cell where a keeper has been, so it is open.
+	 * @param pos Position of the cell.
+	 * @return True if no keeper had visited it.
+	 */
+	public boolean visit(Position pos) {
+		return add(pos.getVertical()*width + pos.getHorizontal(), VISITED | OPEN, VISITED);
+	}
+
+	/**
+	 * Add states to a cell unless it has any of the guard states.
+	 * Open is only added if the cell has not been seen.
+	 */
+	private boolean add(int cell, int states, int guard) {
+		int word = cell >>> 2;
+		int shift = (cell & 3) << 3;
+		int bits;
+		int added;
+		do {
+			bits = cells.get(word);
+			int current = bits >>> shift & 0xff;
+			if((current & guard) != 0)
+				return false;
+			added = (current & SEEN) != 0? states & ~SEEN : states;
+		}
+		while(!cells.compareAndSet(word, bits, bits | added << shift));
+
+		log.set(size.getAndIncrement(), cell << STATE_BITS | added);
+		return true;
+	}
+
+	/**
+	 * Latest states of a cell, which may change at any time.
+	 * @param pos Position of the cell.
+	 * @return Bits of WALL, OPEN, KEY, DOOR and VISITED.
+	 */
+	public int get(Position pos) {
+		int cell = pos.getVertical()*width + pos.getHorizontal();
+		return cells.get(cell >>> 2) >>> ((cell & 3) << 3) & 0xff;
+	}
+
+	/**
+	 *
+	 * @return Changes published, some of them may still be being written.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Reads the log of a keeper.
+	 */
+	public class Reader {
+		private int cursor = 0;
+		private int entry;
+
+		/**
+		 * Move to the next change published.
+		 * @return False if there are no more changes written.
+		 */
+		public boolean next() {
+			if(cursor == log.length())
+				return false;
+			entry = log.get(cursor);
+			if(entry == 0)
+				return false;
+			cursor++;
+			return true;
+		}
+
+		/**
+		 *
+		 * @return Changes read.
+		 */
+		public int position() {
+			return cursor;
+		}
+
+		/**
+		 *
+		 * @return Position of the cell changed.
+		 */
+		public Position cell() {
+			int cell = entry >>> STATE_BITS;
+			return new Position(cell / width, cell % width);
+		}
+
+		/**
+		 *
+		 * @return Bits of the states added to the cell.
+		 */
+		public int added() {
+			return entry & ((1 << STATE_BITS) - 1);
+		}
+	}
+
+	/**
+	 *
+	 * @return A reader from the first change published.
+	 */
+	public Reader reader() {
+		return new Reader();
+	}
+}
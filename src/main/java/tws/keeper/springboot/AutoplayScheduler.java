@@ -0,0 +1,137 @@
+package tws.keeper.springboot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Makes the keepers of registered sessions act without any client request
+ * <p>
+ * Every tick each session gets the steps it has earned since the last one at
+ * its rate, or a fixed budget of steps if it plays as fast as possible, and
+ * its steps are queued as a single batch in a bounded worker pool. A session
+ * never has more than one batch in the pool, and the sessions are queued in a
+ * different order every tick, so busy workers delay every session alike and
+ * none of them starves.
+ * <p>
+ * Autoplay ends when the maze is completed (unless it restarts) or the session
+ * is removed. Autoplayed sessions count as used, they are not evicted.
+ */
+@Component
+public class AutoplayScheduler {
+
+    private final SessionRegistry sessions;
+    private final ConcurrentMap<String, Autoplay> autoplays = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final int maxStepsPerTick;
+    private int rotation = 0; // First session queued in the next tick
+
+    public AutoplayScheduler(SessionRegistry sessions,
+                             @Value("${keeper.autoplay.threads:0}") int threads,
+                             @Value("${keeper.autoplay.max-steps-per-tick:1000}") int maxStepsPerTick) {
+        this.sessions = sessions;
+        this.maxStepsPerTick = maxStepsPerTick;
+        this.workers = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "autoplay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start playing a session, or change how it is played
+     *
+     * @param stepsPerSecond Steps per second, 0 or less to play as fast as possible
+     * @param restart        Start again with a new maze when the maze is completed
+     */
+    public void start(GameSession session, double stepsPerSecond, boolean restart) {
+        autoplays.put(session.getId(), new Autoplay(session, stepsPerSecond, restart));
+    }
+
+    /**
+     * Stop playing a session
+     */
+    public void stop(GameSession session) {
+        autoplays.remove(session.getId());
+    }
+
+    /**
+     * Is this session being played
+     */
+    public boolean isPlaying(GameSession session) {
+        return autoplays.containsKey(session.getId());
+    }
+
+    /**
+     * Queue the steps of every session
+     */
+    @Scheduled(fixedRateString = "${keeper.autoplay.tick-ms:50}")
+    public void tick() {
+        List<Autoplay> queue = new ArrayList<>(autoplays.values());
+        if (queue.isEmpty()) return;
+        long now = System.nanoTime();
+        int first = Math.floorMod(rotation++, queue.size());
+        for (int i = 0; i < queue.size(); i++) {
+            Autoplay autoplay = queue.get((first + i) % queue.size());
+            if (!sessions.isLive(autoplay.session)) autoplays.remove(autoplay.session.getId(), autoplay);
+            else autoplay.schedule(now);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private class Autoplay {
+
+        private final GameSession session;
+        private final double stepsPerNano;
+        private final boolean restart;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private long lastTick;
+        private double earned = 0; // Steps not taken yet
+
+        Autoplay(GameSession session, double stepsPerSecond, boolean restart) {
+            this.session = session;
+            this.stepsPerNano = stepsPerSecond / 1e9;
+            this.restart = restart;
+            this.lastTick = System.nanoTime();
+        }
+
+        void schedule(long now) {
+            if (stepsPerNano > 0) earned = Math.min(earned + (now - lastTick) * stepsPerNano, maxStepsPerTick);
+            lastTick = now;
+            int steps = stepsPerNano > 0 ? (int) earned : maxStepsPerTick;
+            if (steps == 0 || !running.compareAndSet(false, true)) return; // still busy: its steps wait
+            earned -= stepsPerNano > 0 ? steps : 0;
+            try {
+                workers.execute(() -> play(steps));
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        }
+
+        private void play(int steps) {
+            try {
+                session.touch();
+                if (!session.run(steps).isComplete()) return;
+                if (restart) session.reset();
+                else autoplays.remove(session.getId(), this);
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package tws.keeper.springboot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the status of a session to its watchers as server-sent events
+ * <p>
+ * Events: "status" with the status json after every change, and "reset" with
+ * the new generation when the session gets a new maze (fetch /maze again).
+ * <p>
+ * The session only marks its watchers as dirty, the events are sent by
+ * dispatcher threads. A watcher has at most one dispatch running, and it always
+ * sends the latest status: while a slow watcher is still receiving an event
+ * every change in between is coalesced into the next one, so it never falls
+ * behind in memory and never blocks the keeper.
+ * <p>
+ * Writing an event blocks while the client does not read it, so every watcher
+ * being written to has a thread of its own, and at most keeper.stream.max-watchers
+ * watchers are connected at once. A watcher still writing an event after
+ * keeper.stream.send-timeout-ms is dropped: it hears no more changes, and its
+ * stream ends when the write returns. Streams also end when the session is removed.
+ */
+@Component
+public class GameEventStream {
+
+    private final ExecutorService dispatcher;
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private final int maxWatchers;
+    private final long timeoutMillis;
+    private final long sendTimeoutMillis;
+
+    public GameEventStream(@Value("${keeper.stream.max-watchers:1000}") int maxWatchers,
+                           @Value("${keeper.stream.timeout-ms:1800000}") long timeoutMillis,
+                           @Value("${keeper.stream.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.dispatcher = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "game-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxWatchers = maxWatchers;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+
+    /**
+     * Start sending the events of this session, beginning with its current status
+     *
+     * @throws TooManyWatchersException if keeper.stream.max-watchers are already connected
+     */
+    public SseEmitter watch(GameSession session) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Watcher watcher = new Watcher(session, emitter);
+        watchers.add(watcher);
+        if (watchers.size() > maxWatchers) {
+            watchers.remove(watcher);
+            throw new TooManyWatchersException();
+        }
+        emitter.onCompletion(watcher::close);
+        emitter.onTimeout(watcher::close);
+        session.addChangeListener(watcher);
+        watcher.run();
+        return emitter;
+    }
+
+    /**
+     * Watchers connected
+     */
+    public int getWatcherCount() {
+        return watchers.size();
+    }
+
+    /**
+     * Drop the watchers that have been writing the same event for longer than the send timeout
+     */
+    @Scheduled(fixedDelayString = "${keeper.stream.send-timeout-ms:10000}")
+    public void dropStalled() {
+        long oldest = System.currentTimeMillis() - sendTimeoutMillis;
+        for (Watcher watcher : watchers) if (watcher.isSendingSince(oldest)) watcher.close();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private class Watcher implements Runnable {
+
+        private volatile GameSession session; // null once closed, so a stalled write does not keep it alive
+        private final SseEmitter emitter;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long sendingSince = 0; // System.currentTimeMillis() while writing an event
+        private int generation; // of the last status sent
+
+        Watcher(GameSession session, SseEmitter emitter) {
+            this.session = session;
+            this.emitter = emitter;
+            this.generation = session.getGeneration();
+        }
+
+        /**
+         * The session changed, called by the session holding its lock
+         */
+        @Override
+        public void run() {
+            dirty.set(true);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::flush);
+                } catch (RejectedExecutionException e) { // shutting down
+                    scheduled.set(false);
+                    close();
+                }
+            }
+        }
+
+        private void flush() {
+            try {
+                while (dirty.getAndSet(false)) {
+                    GameSession session = this.session;
+                    if (session == null || session.isClosed()) break;
+                    int current = session.getGeneration();
+                    String status = session.statusJson();
+                    sendingSince = System.currentTimeMillis();
+                    if (current != generation) {
+                        generation = current;
+                        emitter.send(SseEmitter.event().name("reset").data(current));
+                    }
+                    emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                    sendingSince = 0;
+                }
+                GameSession session = this.session;
+                if (session == null || session.isClosed()) { // dropped or removed
+                    close();
+                    emitter.complete();
+                    return;
+                }
+            } catch (IOException | IllegalStateException e) { // gone or already completed
+                close();
+                return;
+            } finally {
+                sendingSince = 0;
+                scheduled.set(false);
+            }
+            if (dirty.get()) run(); // changed after the last check, before scheduled was cleared
+        }
+
+        private boolean isSendingSince(long time) {
+            long since = sendingSince;
+            return since != 0 && since < time;
+        }
+
+        private void close() {
+            watchers.remove(this);
+            GameSession session = this.session;
+            this.session = null;
+            if (session != null) session.removeChangeListener(this);
+        }
+    }
+
+    /**
+     * The maximum number of watchers has been reached
+     */
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class TooManyWatchersException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TooManyWatchersException() {
+            super("Too many watchers");
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package tws.keeper.springboot;
+
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.KeeperAI;
+import tws.keeper.solution.PathFinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A maze and its keeper, played by one client
+ * <p>
+ * Mazes and keepers are not thread safe, so every access to them goes through
+ * the synchronized methods of the session. Different sessions never share a lock.
+ * <p>
+ * Change listeners are called, holding the lock, every time the keeper moves,
+ * takes a key or completes the maze and every time the maze is reset. They
+ * must return quickly and must not call the session: they are only meant to
+ * schedule work somewhere else (see GameEventStream). They are called a last
+ * time, and dropped, when the session is closed.
+ */
+public class GameSession {
+
+    private final String id;
+    private final Maze.Builder mazeBuilder;
+    private final PathFinder.Factory pathFinders;
+    private Maze maze;
+    private volatile long lastAccess;
+    private final Map<MazeEncoding, byte[]> encodedMaze = new EnumMap<>(MazeEncoding.class); // for encodedVersion
+    private byte[] packedMaze; // for encodedVersion
+    private int encodedVersion;
+    private String status; // Full status json at statusStep
+    private long statusStep;
+    private int generation = 0; // Number of resets
+    private volatile boolean closed = false;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    GameSession(String id, Maze.Builder mazeBuilder, PathFinder.Factory pathFinders) {
+        this.id = id;
+        this.mazeBuilder = mazeBuilder;
+        this.pathFinders = pathFinders;
+        reset();
+    }
+
+    /**
+     * Session id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Time of the last request, System.currentTimeMillis()
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Cells of the mazes of this session
+     */
+    public long getCells() {
+        return (long) mazeBuilder.getHeight() * mazeBuilder.getWidth();
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Start again with a new maze and keeper
+     */
+    public synchronized void reset() {
+        Keeper keeper = new KeeperAI(mazeBuilder.getHeight(), mazeBuilder.getWidth(), pathFinders);
+        maze = mazeBuilder.build(keeper);
+        clearEncodedMaze();
+        status = null;
+        generation++;
+        changed();
+    }
+
+    /**
+     * Number of times the session has been reset, changes with every new maze
+     */
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Make the keeper act once
+     */
+    public synchronized void act() {
+        Position keeper = maze.getKeeperPosition();
+        int keysFound = maze.getKeysFound();
+        maze.makeKeeperAct();
+        changedSince(keeper, keysFound);
+    }
+
+    /**
+     * Make the keeper act until the maze is completed or maxSteps are taken
+     */
+    public synchronized StepBatch run(int maxSteps) {
+        Position keeper = maze.getKeeperPosition();
+        int keysFound = maze.getKeysFound();
+        StepBatch batch = new StepBatch(maze.getSteps());
+        for (int i = 0; i < maxSteps && !maze.isMazeCompleted(); i++) batch.add(maze.makeKeeperAct(), maze.getKeeperPosition());
+        batch.finish(maze.getKeysFound(), maze.isMazeCompleted());
+        changedSince(keeper, keysFound);
+        return batch;
+    }
+
+    /**
+     * Call the listener after every change, see the class comment
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Whether the session has been removed from its registry
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The session has been removed: tell the listeners and drop them, so they
+     * do not keep it alive
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            changed();
+        }
+        changeListeners.clear();
+    }
+
+    private void changedSince(Position keeper, int keysFound) {
+        // completing the maze means moving to the door
+        if (!keeper.equals(maze.getKeeperPosition()) || keysFound != maze.getKeysFound()) changed();
+    }
+
+    private void changed() {
+        for (Runnable listener : changeListeners) listener.run();
+    }
+
+    /**
+     * Json representation of the maze, UTF-8 encoded
+     * <p>
+     * The json is only written again when the cells change (a key is taken),
+     * meanwhile every request gets the same bytes.
+     */
+    public synchronized byte[] mazeJson(MazeEncoding encoding) {
+        if (encodedVersion != maze.getLayoutVersion()) clearEncodedMaze();
+        byte[] json = encodedMaze.get(encoding);
+        if (json == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(maze.getHeight() * (encoding == MazeEncoding.CELLS ? 7 * maze.getWidth() : maze.getWidth() + 3) + 128);
+            try {
+                encoding.write(maze, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // not thrown by a ByteArrayOutputStream
+            }
+            json = out.toByteArray();
+            encodedMaze.put(encoding, json);
+        }
+        return json;
+    }
+
+    /**
+     * Packed representation of the maze, see WireFormat. Cached like the json.
+     */
+    public synchronized byte[] mazeBinary() {
+        if (encodedVersion != maze.getLayoutVersion()) clearEncodedMaze();
+        if (packedMaze == null) packedMaze = WireFormat.maze(maze);
+        return packedMaze;
+    }
+
+    private void clearEncodedMaze() {
+        encodedMaze.clear();
+        packedMaze = null;
+        encodedVersion = maze.getLayoutVersion();
+    }
+
+    /**
+     * Json representation of the keeper, door and keys
+     */
+    public String statusJson() {
+        return statusJson(-1, 0);
+    }
+
+    /**
+     * Json representation of the keeper, door and keys. If since is not
+     * negative and the client saw that step of this generation, only what
+     * changed after that step is included: the keeper and the keys found after
+     * it. Otherwise, e.g. after a reset, the full status is sent.
+     */
+    public synchronized String statusJson(long since, int sinceGeneration) {
+        since = deltaSince(since, sinceGeneration);
+        if (since < 0 && status != null && statusStep == maze.getSteps()) return status; // watchers share it
+        int found = maze.getKeysFound();
+        int first = since < 0 ? 0 : WireFormat.firstFoundAfter(maze, since);
+        StringBuilder json = new StringBuilder(128 + 40 * (found - first + (since < 0 ? maze.getTotalNumberOfKeys() : 0)));
+        json.append("{\n \"generation\":").append(generation).append(",\n");
+        json.append(" \"step\":").append(maze.getSteps()).append(",\n");
+        if (since >= 0) json.append(" \"since\":").append(since).append(",\n");
+        json.append(" \"keeper\":").append(maze.getKeeperPosition().toJson()).append(",\n");
+        if (since < 0) {
+            json.append(" \"door\":").append(maze.getDoorPosition().toJson()).append(",\n");
+            appendPositions(json.append(" \"keys\":"), maze.getKeysPositions(), 0).append(",\n");
+        }
+        appendPositions(json.append(" \"found\":"), maze.getKeysFoundPositions(), first).append(",\n");
+        json.append(" \"keysFound\":").append(found).append(",\n");
+        json.append(" \"complete\":").append(maze.isMazeCompleted()).append("}\n");
+        if (since >= 0) return json.toString();
+        statusStep = maze.getSteps();
+        return status = json.toString();
+    }
+
+    private static StringBuilder appendPositions(StringBuilder json, List<Position> positions, int from) {
+        json.append('[');
+        for (int i = from; i < positions.size(); i++) json.append(i > from ? "," : "").append(positions.get(i).toJson());
+        return json.append(']');
+    }
+
+    /**
+     * Binary representation of the status, see WireFormat. Negative since for
+     * the full status, or the changes after that step of that generation.
+     */
+    public synchronized byte[] statusBinary(long since, int sinceGeneration) {
+        return WireFormat.status(maze, generation, deltaSince(since, sinceGeneration));
+    }
+
+    /**
+     * The step a delta can be sent from, or -1 for a full status if the client
+     * saw another maze or a step this one has not reached
+     */
+    private long deltaSince(long since, int sinceGeneration) {
+        return sinceGeneration == generation && since <= maze.getSteps() ? since : -1;
+    }
+
+}
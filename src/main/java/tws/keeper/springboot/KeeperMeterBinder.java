@@ -0,0 +1,56 @@
+package tws.keeper.springboot;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import tws.keeper.metrics.Histogram;
+import tws.keeper.metrics.KeeperMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the KeeperMetrics of every keeper of the server through Micrometer,
+ * under /actuator/metrics/keeper.*
+ * <p>
+ * Keepers keep recording in KeeperMetrics, so headless runs do not need a
+ * registry: counters are FunctionCounters reading the LongAdders, and every
+ * histogram is a count and a total counter, a max gauge and a percentile gauge
+ * per phi, read when the registry is scraped.
+ */
+@Component
+public class KeeperMeterBinder implements MeterBinder {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "keeper.steps", KeeperMetrics.STEPS, "Actions requested from keepers");
+        counter(registry, "keeper.episodes", KeeperMetrics.EPISODES, "Mazes completed");
+        counter(registry, "keeper.replans", KeeperMetrics.REPLANS, "Paths planned by keepers");
+        counter(registry, "keeper.observations", KeeperMetrics.OBSERVATIONS, "Cells around the keepers observed");
+        counter(registry, "keeper.exploration.steps", KeeperMetrics.EXPLORATION_STEPS, "Exploration steps");
+        histogram(registry, "keeper.step", KeeperMetrics.STEP_NANOS, "nanoseconds", "Time a keeper takes to decide an action");
+        histogram(registry, "keeper.episode.steps", KeeperMetrics.EPISODE_STEPS, "steps", "Steps taken to complete a maze");
+        histogram(registry, "keeper.episode.replans", KeeperMetrics.EPISODE_REPLANS, "paths", "Paths planned to complete a maze");
+        histogram(registry, "keeper.expanded", KeeperMetrics.EXPANDED, "nodes", "Nodes expanded by every search");
+        histogram(registry, "keeper.open.set.peak", KeeperMetrics.OPEN_SET_PEAK, "nodes", "Largest open set of every search");
+        histogram(registry, "keeper.path.length", KeeperMetrics.PATH_LENGTH, "actions", "Actions of every path planned");
+        histogram(registry, "keeper.need.update", KeeperMetrics.NEED_UPDATE_NANOS, "nanoseconds", "Time to check whether a path is still valid");
+    }
+
+    private static void counter(MeterRegistry registry, String name, LongAdder adder, String description) {
+        FunctionCounter.builder(name, adder, LongAdder::sum).description(description).register(registry);
+    }
+
+    private static void histogram(MeterRegistry registry, String name, Histogram histogram, String unit, String description) {
+        FunctionCounter.builder(name + ".count", histogram, Histogram::getCount).description(description).register(registry);
+        FunctionCounter.builder(name + ".total", histogram, Histogram::getSum).baseUnit(unit).description(description).register(registry);
+        Gauge.builder(name + ".max", histogram, Histogram::getMax).baseUnit(unit).description(description).register(registry);
+        for (double phi : PERCENTILES)
+            Gauge.builder(name + ".percentile", histogram, h -> h.getPercentile(phi * 100))
+                    .tag("phi", String.valueOf(phi)).baseUnit(unit).description(description).register(registry);
+    }
+
+}
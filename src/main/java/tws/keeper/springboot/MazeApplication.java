@@ -2,8 +2,10 @@ package tws.keeper.springboot;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {"tws.keeper.springboot"})
+@EnableScheduling
 public class MazeApplication {
     public static void main(String[] args) {
         SpringApplication.run(MazeApplication.class, args);
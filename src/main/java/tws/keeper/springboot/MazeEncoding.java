@@ -0,0 +1,113 @@
+package tws.keeper.springboot;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Maze;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Ways of writing the cells of a maze as json
+ * <ul>
+ * <li>cells: one string per cell, "wall", "path", "key" or "door" (the Maze.toJson layout)</li>
+ * <li>chars: one string per row, one character per cell, see the legend</li>
+ * <li>rle: one string per row, each run of equal cells as its length followed by the character</li>
+ * </ul>
+ * The json is written through a streaming generator, so no string holding the
+ * whole maze is ever built.
+ */
+public enum MazeEncoding {
+
+    CELLS {
+        @Override
+        void writeRow(JsonGenerator json, Maze maze, int row, char[] buffer) throws IOException {
+            json.writeStartArray();
+            for (int horizontal = 0; horizontal < maze.getWidth(); horizontal++)
+                json.writeString(CELL_NAMES[maze.getCell(row, horizontal).ordinal()]);
+            json.writeEndArray();
+        }
+    },
+    CHARS {
+        @Override
+        void writeRow(JsonGenerator json, Maze maze, int row, char[] buffer) throws IOException {
+            for (int horizontal = 0; horizontal < maze.getWidth(); horizontal++)
+                buffer[horizontal] = CELL_CHARS[maze.getCell(row, horizontal).ordinal()];
+            json.writeString(buffer, 0, maze.getWidth());
+        }
+    },
+    RLE {
+        @Override
+        void writeRow(JsonGenerator json, Maze maze, int row, char[] buffer) throws IOException {
+            int length = 0;
+            int horizontal = 0;
+            while (horizontal < maze.getWidth()) {
+                Cell cell = maze.getCell(row, horizontal);
+                int run = 1;
+                while (horizontal + run < maze.getWidth() && maze.getCell(row, horizontal + run) == cell) run++;
+                if (run > 1) length = appendNumber(buffer, length, run);
+                buffer[length++] = CELL_CHARS[cell.ordinal()];
+                horizontal += run;
+            }
+            json.writeString(buffer, 0, length);
+        }
+
+        private int appendNumber(char[] buffer, int length, int number) {
+            int start = length;
+            do buffer[length++] = (char) ('0' + number % 10);
+            while ((number /= 10) > 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                char digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+            return length;
+        }
+    };
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final SerializableString[] CELL_NAMES = new SerializableString[Cell.values().length];
+    private static final char[] CELL_CHARS = {'#', '.', 'k', 'D'}; // by Cell ordinal
+
+    static {
+        for (Cell cell : Cell.values()) CELL_NAMES[cell.ordinal()] = new SerializedString(cell.toString());
+    }
+
+    /**
+     * The encoding with this name, ignoring case
+     */
+    public static MazeEncoding parse(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Write the maze size and cells in this encoding
+     */
+    public void write(Maze maze, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeNumberField("height", maze.getHeight());
+            json.writeNumberField("width", maze.getWidth());
+            if (this != CELLS) {
+                json.writeStringField("encoding", name().toLowerCase(Locale.ROOT));
+                json.writeObjectFieldStart("legend");
+                for (Cell cell : Cell.values()) json.writeStringField(String.valueOf(CELL_CHARS[cell.ordinal()]), cell.toString());
+                json.writeEndObject();
+            }
+            json.writeArrayFieldStart(this == CELLS ? "cells" : "rows");
+            char[] buffer = new char[maze.getWidth()]; // an rle run of n cells never takes more than n chars
+            for (int row = 0; row < maze.getHeight(); row++) writeRow(json, maze, row, buffer);
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+    }
+
+    abstract void writeRow(JsonGenerator json, Maze maze, int row, char[] buffer) throws IOException;
+
+}
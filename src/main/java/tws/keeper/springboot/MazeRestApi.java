@@ -1,59 +1,227 @@
 package tws.keeper.springboot;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import tws.keeper.solution.KeeperAI;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tws.keeper.model.Maze;
-import tws.keeper.model.Keeper;
-import tws.keeper.model.Position;
 
-import java.util.stream.Collectors;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * The single maze endpoints (/api/maze, /api/act...) play the default session.
+ * Every other game lives in its own session under /api/sessions/{id}.
+ * <p>
+ * /maze takes an optional encoding: cells (default), chars or rle, see MazeEncoding.
+ * /maze and /status are also sent packed (see WireFormat) to clients accepting
+ * application/x-keeper. Every status has the generation of the session, and
+ * /status?since=step&generation=n only sends what changed after that step, or
+ * the full status if the session has been reset since.
+ * /events pushes every change of the status, see GameEventStream.
+ * POST /autoplay plays the session on the server (stepsPerSecond, 0 for as fast
+ * as possible, and restart), DELETE /autoplay stops it. See AutoplayScheduler.
+ * <p>
+ * /run takes many steps in one request. steps=0 runs until the maze is completed
+ * (up to keeper.run.max-steps), and stream=true sends one json line per step while
+ * the keeper is still running.
+ * <p>
+ * Keeper metrics are published by Spring Boot Actuator, see KeeperMeterBinder.
+ */
 @RestController
 @RequestMapping("/api")
 public class MazeRestApi {
 
-    private Maze maze;
-    private Keeper keeper;
+    private static final MediaType BINARY = MediaType.parseMediaType(WireFormat.MEDIA_TYPE);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int STREAM_CHUNK = 256; // steps taken while holding the session
 
-    {
-        reset();
+    private final SessionRegistry sessions;
+    private final GameEventStream events;
+    private final AutoplayScheduler autoplay;
+    private final int maxRunSteps;
+
+    public MazeRestApi(SessionRegistry sessions, GameEventStream events, AutoplayScheduler autoplay,
+                       @Value("${keeper.run.max-steps:1000000}") int maxRunSteps) {
+        this.sessions = sessions;
+        this.events = events;
+        this.autoplay = autoplay;
+        this.maxRunSteps = maxRunSteps;
     }
 
     @RequestMapping(value = "/maze", method = RequestMethod.GET)
-    public ResponseEntity<String> maze() {
-        return new ResponseEntity(maze.toJson(), HttpStatus.OK);
+    public ResponseEntity<?> maze(@RequestParam(defaultValue = "cells") String encoding) {
+        return maze(SessionRegistry.DEFAULT_SESSION, encoding);
+    }
+
+    @RequestMapping(value = "/maze", method = RequestMethod.GET, produces = WireFormat.MEDIA_TYPE)
+    public ResponseEntity<byte[]> mazeBinary() {
+        return mazeBinary(SessionRegistry.DEFAULT_SESSION);
     }
 
     @RequestMapping(value = "/status", method = RequestMethod.GET)
-    public ResponseEntity<String> status() {
-        return new ResponseEntity(getStatusJson(), HttpStatus.OK);
+    public ResponseEntity<String> status(@RequestParam(defaultValue = "-1") long since,
+                                         @RequestParam(defaultValue = "0") int generation) {
+        return status(SessionRegistry.DEFAULT_SESSION, since, generation);
+    }
+
+    @RequestMapping(value = "/status", method = RequestMethod.GET, produces = WireFormat.MEDIA_TYPE)
+    public ResponseEntity<byte[]> statusBinary(@RequestParam(defaultValue = "-1") long since,
+                                               @RequestParam(defaultValue = "0") int generation) {
+        return statusBinary(SessionRegistry.DEFAULT_SESSION, since, generation);
+    }
+
+    @RequestMapping(value = "/events", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events() {
+        return events(SessionRegistry.DEFAULT_SESSION);
     }
 
     @RequestMapping(value = "/reset", method = RequestMethod.GET)
-    public ResponseEntity reset() {
-        keeper = new KeeperAI();
-        maze = new Maze(keeper);
-        return new ResponseEntity(HttpStatus.OK);
+    public ResponseEntity<Void> reset() {
+        return reset(SessionRegistry.DEFAULT_SESSION);
     }
 
     @RequestMapping(value = "/act", method = RequestMethod.GET)
-    public ResponseEntity<String> act() {
-        maze.makeKeeperAct();
-        return new ResponseEntity(HttpStatus.OK);
+    public ResponseEntity<Void> act() {
+        return act(SessionRegistry.DEFAULT_SESSION);
+    }
+
+    @RequestMapping(value = "/run", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<String> run(@RequestParam(defaultValue = "0") int steps) {
+        return run(SessionRegistry.DEFAULT_SESSION, steps);
+    }
+
+    @RequestMapping(value = "/run", method = {RequestMethod.GET, RequestMethod.POST}, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> runStream(@RequestParam(defaultValue = "0") int steps) {
+        return runStream(SessionRegistry.DEFAULT_SESSION, steps);
+    }
+
+    @RequestMapping(value = "/autoplay", method = RequestMethod.POST)
+    public ResponseEntity<Void> startAutoplay(@RequestParam(defaultValue = "0") double stepsPerSecond,
+                                              @RequestParam(defaultValue = "false") boolean restart) {
+        return startAutoplay(SessionRegistry.DEFAULT_SESSION, stepsPerSecond, restart);
+    }
+
+    @RequestMapping(value = "/autoplay", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> stopAutoplay() {
+        return stopAutoplay(SessionRegistry.DEFAULT_SESSION);
+    }
+
+    @RequestMapping(value = "/sessions", method = RequestMethod.POST)
+    public ResponseEntity<String> createSession(@RequestParam(defaultValue = "40") int height,
+                                                @RequestParam(defaultValue = "40") int width,
+                                                @RequestParam(defaultValue = "7") int keys,
+                                                @RequestParam(required = false) Long seed) {
+        Maze.Builder builder = Maze.builder().height(height).width(width).keys(keys);
+        if (seed != null) builder.seed(seed);
+        GameSession session;
+        try {
+            session = sessions.create(builder);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>("{\"id\":\"" + session.getId() + "\"}", HttpStatus.CREATED);
+    }
+
+    @RequestMapping(value = "/sessions/{id}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> deleteSession(@PathVariable String id) {
+        sessions.remove(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @RequestMapping(value = "/sessions/{id}/maze", method = RequestMethod.GET)
+    public ResponseEntity<?> maze(@PathVariable String id, @RequestParam(defaultValue = "cells") String encoding) {
+        MazeEncoding mazeEncoding;
+        try {
+            mazeEncoding = MazeEncoding.parse(encoding);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Unknown encoding: " + encoding, HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(sessions.get(id).mazeJson(mazeEncoding));
+    }
+
+    @RequestMapping(value = "/sessions/{id}/maze", method = RequestMethod.GET, produces = WireFormat.MEDIA_TYPE)
+    public ResponseEntity<byte[]> mazeBinary(@PathVariable String id) {
+        return ResponseEntity.ok().contentType(BINARY).body(sessions.get(id).mazeBinary());
+    }
+
+    @RequestMapping(value = "/sessions/{id}/status", method = RequestMethod.GET)
+    public ResponseEntity<String> status(@PathVariable String id, @RequestParam(defaultValue = "-1") long since,
+                                         @RequestParam(defaultValue = "0") int generation) {
+        return new ResponseEntity<>(sessions.get(id).statusJson(since, generation), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/sessions/{id}/status", method = RequestMethod.GET, produces = WireFormat.MEDIA_TYPE)
+    public ResponseEntity<byte[]> statusBinary(@PathVariable String id, @RequestParam(defaultValue = "-1") long since,
+                                               @RequestParam(defaultValue = "0") int generation) {
+        return ResponseEntity.ok().contentType(BINARY).body(sessions.get(id).statusBinary(since, generation));
+    }
+
+    @RequestMapping(value = "/sessions/{id}/events", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id) {
+        return events.watch(sessions.get(id));
+    }
+
+    @RequestMapping(value = "/sessions/{id}/reset", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Void> reset(@PathVariable String id) {
+        sessions.get(id).reset();
+        return ResponseEntity.ok().build();
+    }
+
+    @RequestMapping(value = "/sessions/{id}/act", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Void> act(@PathVariable String id) {
+        sessions.get(id).act();
+        return ResponseEntity.ok().build();
+    }
+
+    @RequestMapping(value = "/sessions/{id}/run", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<String> run(@PathVariable String id, @RequestParam(defaultValue = "0") int steps) {
+        StepBatch batch = sessions.get(id).run(runLimit(steps));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(batch.toJson());
+    }
+
+    @RequestMapping(value = "/sessions/{id}/run", method = {RequestMethod.GET, RequestMethod.POST}, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> runStream(@PathVariable String id, @RequestParam(defaultValue = "0") int steps) {
+        GameSession session = sessions.get(id);
+        int limit = runLimit(steps);
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            int remaining = limit;
+            while (remaining > 0) {
+                StepBatch chunk = session.run(Math.min(STREAM_CHUNK, remaining)); // other requests can run between chunks
+                writer.write(chunk.toNdjson());
+                writer.flush();
+                remaining -= chunk.size();
+                if (chunk.isComplete() || chunk.size() == 0) break;
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @RequestMapping(value = "/sessions/{id}/autoplay", method = RequestMethod.POST)
+    public ResponseEntity<Void> startAutoplay(@PathVariable String id,
+                                              @RequestParam(defaultValue = "0") double stepsPerSecond,
+                                              @RequestParam(defaultValue = "false") boolean restart) {
+        autoplay.start(sessions.get(id), stepsPerSecond, restart);
+        return ResponseEntity.ok().build();
+    }
+
+    @RequestMapping(value = "/sessions/{id}/autoplay", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> stopAutoplay(@PathVariable String id) {
+        autoplay.stop(sessions.get(id));
+        return ResponseEntity.ok().build();
     }
 
-    private String getStatusJson() {
-        return "{\n" +
-                " \"keeper\":" + maze.getKeeperPosition().toJson() + ",\n" +
-                " \"door\":" + maze.getDoorPosition().toJson() + ",\n" +
-                " \"keys\":[" + maze.getKeysPositions().stream().map(Position::toJson).collect(Collectors.joining(",")) + "],\n" +
-                " \"found\":[" + maze.getKeysFoundPositions().stream().map(Position::toJson).collect(Collectors.joining(",")) + "],\n" +
-                " \"complete\":" + maze.isMazeCompleted() +
-                "}\n";
+    private int runLimit(int steps) {
+        return steps <= 0 ? maxRunSteps : Math.min(steps, maxRunSteps);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package tws.keeper.springboot;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The session does not exist or has been evicted
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class SessionNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SessionNotFoundException(String id) {
+        super("No session " + id);
+    }
+
+}
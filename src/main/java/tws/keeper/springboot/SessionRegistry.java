@@ -0,0 +1,190 @@
+package tws.keeper.springboot;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import tws.keeper.model.Maze;
+import tws.keeper.solution.DStarLite;
+import tws.keeper.solution.PathFinder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live game sessions by id
+ * <p>
+ * Sessions idle for longer than the timeout are evicted periodically. The
+ * default session, used by the single maze endpoints, is never evicted.
+ * Removed and evicted sessions are closed, ending the event streams of their
+ * watchers.
+ * <p>
+ * Every session holds its maze and the per cell maps of its keeper, about 20
+ * bytes per cell, so mazes of more than keeper.sessions.max-cells cells are
+ * rejected, and at most keeper.sessions.max sessions and
+ * keeper.sessions.max-total-cells cells live at once, the default one included.
+ * <p>
+ * Keepers of every session search paths with the path finder named by
+ * keeper.path-finder (see PathFinder.named).
+ */
+@Component
+public class SessionRegistry {
+
+    static final String DEFAULT_SESSION = "default";
+    static final long DEFAULT_MAX_CELLS = 1 << 20;
+    static final long DEFAULT_MAX_TOTAL_CELLS = 1 << 25; // about 640MB of keeper maps
+
+    private final ConcurrentMap<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+    private final int maxSessions;
+    private final long maxCells;
+    private final long maxTotalCells;
+    private final AtomicInteger live = new AtomicInteger(); // Sessions registered or being created
+    private final AtomicLong liveCells = new AtomicLong(); // Cells of the mazes of those sessions
+    private final PathFinder.Factory pathFinders;
+
+    public SessionRegistry(long idleTimeoutMillis, int maxSessions) {
+        this(idleTimeoutMillis, maxSessions, DEFAULT_MAX_CELLS);
+    }
+
+    public SessionRegistry(long idleTimeoutMillis, int maxSessions, long maxCells) {
+        this(idleTimeoutMillis, maxSessions, maxCells, DEFAULT_MAX_TOTAL_CELLS);
+    }
+
+    public SessionRegistry(long idleTimeoutMillis, int maxSessions, long maxCells, long maxTotalCells) {
+        this(idleTimeoutMillis, maxSessions, maxCells, maxTotalCells, DStarLite::new);
+    }
+
+    @Autowired
+    public SessionRegistry(@Value("${keeper.sessions.idle-timeout-ms:1800000}") long idleTimeoutMillis,
+                           @Value("${keeper.sessions.max:10000}") int maxSessions,
+                           @Value("${keeper.sessions.max-cells:" + DEFAULT_MAX_CELLS + "}") long maxCells,
+                           @Value("${keeper.sessions.max-total-cells:" + DEFAULT_MAX_TOTAL_CELLS + "}") long maxTotalCells,
+                           @Value("${keeper.path-finder:d-star-lite}") String pathFinder,
+                           @Value("${keeper.path-finder.weight:1.5}") double weight) {
+        this(idleTimeoutMillis, maxSessions, maxCells, maxTotalCells, PathFinder.named(pathFinder, weight));
+    }
+
+    private SessionRegistry(long idleTimeoutMillis, int maxSessions, long maxCells, long maxTotalCells, PathFinder.Factory pathFinders) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxSessions = maxSessions;
+        this.maxCells = maxCells;
+        this.maxTotalCells = maxTotalCells;
+        this.pathFinders = pathFinders;
+        GameSession session = new GameSession(DEFAULT_SESSION, Maze.builder(), pathFinders);
+        sessions.put(DEFAULT_SESSION, session);
+        live.set(1);
+        liveCells.set(session.getCells());
+    }
+
+    /**
+     * Start a new session playing mazes from this builder
+     *
+     * @throws IllegalArgumentException if the mazes have more cells than allowed,
+     *                                  or than the path finder can search (see IDA_Star.MAX_CELLS)
+     */
+    public GameSession create(Maze.Builder mazeBuilder) {
+        if ((long) mazeBuilder.getHeight() * mazeBuilder.getWidth() > maxCells)
+            throw new IllegalArgumentException("Maze too big: " + mazeBuilder.getHeight() + "x" + mazeBuilder.getWidth()
+                    + ", at most " + maxCells + " cells");
+        long cells = (long) mazeBuilder.getHeight() * mazeBuilder.getWidth();
+        if (live.incrementAndGet() > maxSessions) {
+            live.decrementAndGet();
+            throw new TooManySessionsException();
+        }
+        if (liveCells.addAndGet(cells) > maxTotalCells) {
+            release(cells);
+            throw new TooManySessionsException();
+        }
+        try {
+            String id = UUID.randomUUID().toString();
+            GameSession session = new GameSession(id, mazeBuilder, pathFinders);
+            session.touch();
+            sessions.put(id, session);
+            return session;
+        } catch (RuntimeException e) {
+            release(cells);
+            throw e;
+        }
+    }
+
+    private void release(long cells) {
+        liveCells.addAndGet(-cells);
+        live.decrementAndGet();
+    }
+
+    /**
+     * The session with this id
+     */
+    public GameSession get(String id) {
+        GameSession session = sessions.get(id);
+        if (session == null) throw new SessionNotFoundException(id);
+        session.touch();
+        return session;
+    }
+
+    /**
+     * The session of the single maze endpoints
+     */
+    public GameSession getDefault() {
+        return get(DEFAULT_SESSION);
+    }
+
+    /**
+     * End a session
+     */
+    public void remove(String id) {
+        GameSession session = DEFAULT_SESSION.equals(id) ? null : sessions.remove(id);
+        if (session == null) throw new SessionNotFoundException(id);
+        release(session.getCells());
+        session.close();
+    }
+
+    /**
+     * Is the session still registered
+     */
+    boolean isLive(GameSession session) {
+        return sessions.get(session.getId()) == session;
+    }
+
+    /**
+     * Live sessions
+     */
+    public Collection<GameSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /**
+     * Remove the sessions idle for longer than the timeout
+     */
+    @Scheduled(fixedDelayString = "${keeper.sessions.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long oldest = System.currentTimeMillis() - idleTimeoutMillis;
+        for (GameSession session : sessions.values())
+            if (!DEFAULT_SESSION.equals(session.getId()) && session.getLastAccess() < oldest && sessions.remove(session.getId(), session)) {
+                release(session.getCells());
+                session.close();
+            }
+    }
+
+    /**
+     * The maximum number of sessions, or of cells of all the sessions, has been reached
+     */
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class TooManySessionsException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TooManySessionsException() {
+            super("Too many sessions");
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package tws.keeper.springboot;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.simulation.ActionLog;
+
+import java.util.Arrays;
+
+/**
+ * Steps taken in a single request: the action and the keeper position after every step
+ */
+public class StepBatch {
+
+    private final long firstStep;
+    private final ActionLog actions = new ActionLog();
+    private int[] positions = new int[64]; // vertical, horizontal
+    private int keysFound;
+    private boolean complete;
+
+    StepBatch(long firstStep) {
+        this.firstStep = firstStep;
+    }
+
+    void add(Action action, Position keeper) {
+        int size = actions.size();
+        if (2 * size == positions.length) positions = Arrays.copyOf(positions, 2 * positions.length);
+        positions[2 * size] = keeper.getVertical();
+        positions[2 * size + 1] = keeper.getHorizontal();
+        actions.add(action);
+    }
+
+    void finish(int keysFound, boolean complete) {
+        this.keysFound = keysFound;
+        this.complete = complete;
+    }
+
+    /**
+     * Number of steps taken
+     */
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * Was the maze completed after the last step
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Compact json: the actions as letters (see ActionLog) and the positions as a flat array
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(32 + 12 * size());
+        json.append("{\"from\":").append(firstStep)
+                .append(",\"steps\":").append(size())
+                .append(",\"actions\":\"").append(actions).append('"')
+                .append(",\"positions\":[");
+        for (int i = 0; i < 2 * size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(positions[i]);
+        }
+        return json.append("],\"keysFound\":").append(keysFound)
+                .append(",\"complete\":").append(complete).append("}\n").toString();
+    }
+
+    /**
+     * One json line per step
+     */
+    public String toNdjson() {
+        String letters = actions.toString();
+        StringBuilder lines = new StringBuilder(80 * size());
+        for (int i = 0; i < size(); i++) {
+            lines.append("{\"step\":").append(firstStep + i + 1)
+                    .append(",\"action\":\"").append(letters.charAt(i))
+                    .append("\",\"keeper\":[").append(positions[2 * i]).append(',').append(positions[2 * i + 1])
+                    .append("]}\n");
+        }
+        return lines.toString();
+    }
+
+}
@@ -0,0 +1,119 @@
+package tws.keeper.springboot;
+
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+
+import java.util.Arrays;
+
+/**
+ * Binary representation of the maze and its status, for clients polling often
+ * <p>
+ * Numbers are unsigned LEB128 varints (7 bits per byte, lowest first, high bit
+ * set while more bytes follow) and a position is its vertical and horizontal
+ * varints.
+ * <p>
+ * Maze: 'M', varint height, varint width, varint layout version, then the cells
+ * row by row, 2 bits per cell (the Cell ordinal: wall, path, key, door), four
+ * cells per byte starting at the lowest bits.
+ * <p>
+ * Status: 'S', flags (1: maze completed, 2: full status), varint generation
+ * (see GameSession.getGeneration), varint step, keeper position, varint total
+ * keys, varint keys found. A full status follows
+ * with the door position, every key position and every found key position. A
+ * delta (status since a step) follows with the number of keys found after that
+ * step and their positions, the last keys found.
+ */
+public final class WireFormat {
+
+    public static final String MEDIA_TYPE = "application/x-keeper";
+
+    private static final int COMPLETED = 1;
+    private static final int FULL = 2;
+
+    private byte[] bytes;
+    private int size = 0;
+
+    private WireFormat(int capacity) {
+        bytes = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * The maze cells, packed
+     */
+    public static byte[] maze(Maze maze) {
+        int width = maze.getWidth();
+        int cells = maze.getHeight() * width;
+        WireFormat out = new WireFormat(16 + (cells + 3) / 4);
+        out.write('M');
+        out.varint(maze.getHeight());
+        out.varint(width);
+        out.varint(maze.getLayoutVersion());
+        int packed = 0;
+        for (int index = 0; index < cells; index++) {
+            packed |= maze.getCell(index / width, index % width).ordinal() << 2 * (index & 3);
+            if ((index & 3) == 3) {
+                out.write(packed);
+                packed = 0;
+            }
+        }
+        if ((cells & 3) != 0) out.write(packed);
+        return out.toByteArray();
+    }
+
+    /**
+     * The status of the maze of this generation, complete if since is negative
+     * or only what changed after that step otherwise
+     */
+    public static byte[] status(Maze maze, int generation, long since) {
+        boolean full = since < 0;
+        int found = maze.getKeysFound();
+        int first = full ? 0 : firstFoundAfter(maze, since);
+        WireFormat out = new WireFormat(32 + 8 * (found - first) + (full ? 8 * maze.getTotalNumberOfKeys() : 0));
+        out.write('S');
+        out.write((maze.isMazeCompleted() ? COMPLETED : 0) | (full ? FULL : 0));
+        out.varint(generation);
+        out.varint(maze.getSteps());
+        out.position(maze.getKeeperPosition());
+        out.varint(maze.getTotalNumberOfKeys());
+        out.varint(found);
+        if (full) {
+            out.position(maze.getDoorPosition());
+            for (Position key : maze.getKeysPositions()) out.position(key);
+        } else
+            out.varint(found - first);
+        for (int i = first; i < found; i++) out.position(maze.getKeysFoundPositions().get(i));
+        return out.toByteArray();
+    }
+
+    /**
+     * Index of the first key found after a step, keys are found in step order
+     */
+    static int firstFoundAfter(Maze maze, long step) {
+        int first = maze.getKeysFound();
+        while (first > 0 && maze.getKeyFoundStep(first - 1) > step) first--;
+        return first;
+    }
+
+    private void write(int b) {
+        if (size == bytes.length) bytes = Arrays.copyOf(bytes, 2 * size);
+        bytes[size++] = (byte) b;
+    }
+
+    private void varint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    private void position(Position position) {
+        varint(position.getVertical());
+        varint(position.getHorizontal());
+    }
+
+    private byte[] toByteArray() {
+        return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+    }
+
+}
@@ -2,6 +2,7 @@ var maze;
 var oldkeeper;
 var gamestatus;
 var timer;
+var events;
 
 // Hit the /maze endpoint to retrieve the status of the maze
 function initialize() {
@@ -10,7 +11,8 @@ function initialize() {
     if (this.readyState == 4 && this.status == 200) {
         maze = JSON.parse(this.responseText);
         document.getElementById("theMaze").innerHTML = mazeToHtml();
-        getStatus();
+        oldkeeper = null;
+        if (!watchEvents()) getStatus();
         }
   }
   xhttp.open("GET", "/api/maze/", true);
@@ -30,6 +32,17 @@ function getStatus() {
   xhttp.send();
 }
 
+// Listen to the /events stream instead of polling /status, if the browser can
+function watchEvents() {
+  if (!window.EventSource) return false;
+  if (!events) {
+    events = new EventSource("/api/events");
+    events.addEventListener("status", function(e) { gamestatus = JSON.parse(e.data); react(); });
+    events.addEventListener("reset", function(e) { initialize(); });
+  }
+  return true;
+}
+
 // updates the HTML to reflect the new status
 function react() {
   document.getElementById("mazeHeight").innerHTML = maze.height;
@@ -48,7 +61,7 @@ function react() {
 // Hit the /act endpoint to make the keeper act
 function robotAct() {
   var xhttp = new XMLHttpRequest();
-  xhttp.onreadystatechange = function() { if (this.readyState == 4 && this.status == 200) getStatus(); };
+  xhttp.onreadystatechange = function() { if (this.readyState == 4 && this.status == 200 && !events) getStatus(); };
   xhttp.open("GET", "/api/act/", true);
   xhttp.send();
 }
@@ -58,7 +71,7 @@ function newWorld() {
   stopRobot();
   document.getElementById("win").innerHTML = "";
   var xhttp = new XMLHttpRequest();
-  xhttp.onreadystatechange = function() { if (this.readyState == 4 && this.status == 200) initialize(); };
+  xhttp.onreadystatechange = function() { if (this.readyState == 4 && this.status == 200 && !events) initialize(); };
   xhttp.open("GET", "/api/reset/", true);
   xhttp.send();
 }
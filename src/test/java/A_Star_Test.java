@@ -70,4 +70,21 @@ public class A_Star_Test {
 		
 		actions = a_star.solve(position, target);
 	}
+	
+	@Test
+	public void pathShouldBeOptimal() throws UnsolvableProblemException {
+		@SuppressWarnings("unchecked")
+		EnumSet<CellState>[][] map = new EnumSet[40][40];
+		ArrayList<Position> path = TestUtils.generateRandomMap(map);
+		MazeExplorer explorer = new MazeExplorer();
+		explorer.setMazeMap(map);
+		A_Star a_star = new A_Star(explorer);
+		
+		for(int i=0;i<20;i++) {
+			Position start = path.get(ThreadLocalRandom.current().nextInt(0, path.size()));
+			Position target = path.get(ThreadLocalRandom.current().nextInt(0, path.size()));
+			
+			assertEquals(TestUtils.distance(explorer, start, target), a_star.solve(start, target).size());
+		}
+	}
 }
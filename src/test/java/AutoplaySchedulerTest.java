@@ -0,0 +1,40 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tws.keeper.model.Maze;
+import tws.keeper.springboot.AutoplayScheduler;
+import tws.keeper.springboot.GameSession;
+import tws.keeper.springboot.SessionRegistry;
+
+public class AutoplaySchedulerTest {
+	
+	@Test(timeout = 20000)
+	public void everySessionShouldBeCompleted() throws InterruptedException {
+		SessionRegistry registry = new SessionRegistry(60000, 100);
+		AutoplayScheduler scheduler = new AutoplayScheduler(registry, 2, 100);
+		GameSession[] games = new GameSession[20];
+		for(int i=0;i<games.length;i++) {
+			games[i] = registry.create(Maze.builder().height(25).width(25).keys(3).seed(i));
+			scheduler.start(games[i], 0, false);
+		}
+		GameSession slow = registry.create(Maze.builder().height(25).width(25).keys(3).seed(100));
+		scheduler.start(slow, 1, false);
+		
+		boolean playing = true;
+		while(playing) {
+			scheduler.tick();
+			Thread.sleep(5);
+			playing = false;
+			for(GameSession game:games)
+				playing |= scheduler.isPlaying(game);
+		}
+		scheduler.shutdown();
+		
+		for(GameSession game:games)
+			assertTrue(game.statusJson().contains("\"complete\":true"));
+		assertTrue(scheduler.isPlaying(slow));
+		assertFalse(slow.statusJson().contains("\"complete\":true"));
+	}
+}
@@ -0,0 +1,22 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import tws.keeper.simulation.BatchRunner;
+import tws.keeper.simulation.BatchStatistics;
+
+public class BatchRunnerTest {
+	
+	@Test
+	public void batchShouldBeReproducible() {
+		BatchRunner runner = new BatchRunner().size(25, 25).keys(3).seed(99).parallelism(4);
+		BatchStatistics first = runner.run(40);
+		BatchStatistics second = runner.run(40);
+		
+		assertEquals(40, first.getEpisodes());
+		assertEquals(40, first.getCompleted());
+		assertEquals(0, first.getFailures());
+		assertEquals(first.getTotalSteps(), second.getTotalSteps());
+		assertEquals(first.getMaxSteps(), second.getMaxSteps());
+	}
+}
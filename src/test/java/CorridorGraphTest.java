@@ -0,0 +1,96 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.CorridorGraph;
+import tws.keeper.solution.MazeExplorer;
+import tws.keeper.solution.MazeExplorer.CellState;
+
+public class CorridorGraphTest {
+
+	@Test
+	public void pathsShouldBeOptimalWhileWallsAreMarked() throws UnsolvableProblemException {
+		@SuppressWarnings("unchecked")
+		EnumSet<CellState>[][] maze = new EnumSet[40][40];
+		ArrayList<Position> free = TestUtils.generateRandomMap(maze);
+		MazeExplorer explorer = new MazeExplorer();
+		CorridorGraph graph = new CorridorGraph(explorer);
+
+		for(int y=0;y<maze.length;y++) {
+			for(int x=0;x<maze[y].length;x++)
+				if(maze[y][x].contains(CellState.WALL))
+					explorer.markWall(new Position(y, x));
+
+			for(int i=0;i<20;i++) {
+				Position start = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+				Position target = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+				ArrayList<Action> actions = graph.solve(start, target);
+
+				assertEquals(TestUtils.distance(explorer, start, target), actions.size());
+				Position pos = start;
+				for(Action action:actions) {
+					pos = move(pos, action);
+					assertTrue(explorer.canVisit(pos));
+				}
+				assertEquals(target, pos);
+			}
+		}
+	}
+
+	@Test
+	public void corridorsShouldNotBeExpanded() throws UnsolvableProblemException {
+		//Serpentine: every odd row is a wall but for a gap at alternate ends
+		MazeExplorer explorer = new MazeExplorer(21, 21);
+		for(int y=1;y<21;y+=2)
+			for(int x=0;x<21;x++)
+				if(x != (y%4 == 1? 20 : 0))
+					explorer.markWall(new Position(y, x));
+		CorridorGraph graph = new CorridorGraph(explorer);
+
+		ArrayList<Action> actions = graph.solve(new Position(0, 0), new Position(20, 20));
+		assertEquals(11*21+10-1, actions.size());
+		assertTrue(graph.getExpanded() <= 2);
+
+		actions = graph.solve(new Position(4, 7), new Position(16, 3));
+		assertEquals(TestUtils.distance(explorer, new Position(4, 7), new Position(16, 3)), actions.size());
+		assertTrue(graph.getExpanded() <= 2);
+	}
+
+	@Test
+	public void needUpdateOnlyWhenPathIsBlocked() throws UnsolvableProblemException {
+		MazeExplorer explorer = new MazeExplorer();
+		CorridorGraph graph = new CorridorGraph(explorer);
+		assertTrue(graph.needUpdate());
+
+		graph.solve(new Position(5, 5), new Position(5, 10));
+		assertFalse(graph.needUpdate());
+
+		explorer.markWall(new Position(20, 20));
+		assertFalse(graph.needUpdate());
+
+		explorer.markWall(new Position(5, 7));
+		assertTrue(graph.needUpdate());
+		assertEquals(7, graph.solve(new Position(5, 5), new Position(5, 10)).size());
+	}
+
+	private static Position move(Position pos, Action action) {
+		int x = pos.getHorizontal();
+		int y = pos.getVertical();
+
+		return new Position(
+				action==Action.GO_UP? y-1:
+				action==Action.GO_DOWN? y+1:y,
+
+				action==Action.GO_LEFT? x-1:
+				action==Action.GO_RIGHT? x+1:x);
+	}
+}
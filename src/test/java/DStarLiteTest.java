@@ -0,0 +1,77 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.DStarLite;
+import tws.keeper.solution.MazeExplorer;
+import tws.keeper.solution.MazeExplorer.CellState;
+
+public class DStarLiteTest {
+	
+	@Test
+	public void repairedPathShouldBeOptimal() throws UnsolvableProblemException {
+		@SuppressWarnings("unchecked")
+		EnumSet<CellState>[][] maze = new EnumSet[40][40];
+		ArrayList<Position> path = TestUtils.generateRandomMap(maze);
+		MazeExplorer explorer = new MazeExplorer();
+		DStarLite planner = new DStarLite(explorer);
+		
+		Position start = path.get(0);
+		Position target = path.get(path.size()-1);
+		ArrayList<Action> actions = planner.solve(start, target);
+		
+		for(int y=0;y<maze.length;y++) {
+			if(ThreadLocalRandom.current().nextInt(4)==0 && !actions.isEmpty()) {
+				Position next = move(start, actions.get(0));
+				if(!maze[next.getVertical()][next.getHorizontal()].contains(CellState.WALL))
+					start = next;
+			}
+			
+			for(int x=0;x<maze[y].length;x++) {
+				if(maze[y][x].contains(CellState.WALL) && !new Position(y, x).equals(start))
+					explorer.markWall(new Position(y, x));
+			}
+			
+			actions = planner.solve(start, target);
+			assertEquals(TestUtils.distance(explorer, start, target), actions.size());
+		}
+	}
+	
+	@Test
+	public void needUpdateOnlyWhenPathIsBlocked() throws UnsolvableProblemException {
+		MazeExplorer explorer = new MazeExplorer();
+		DStarLite planner = new DStarLite(explorer);
+		assertTrue(planner.needUpdate());
+		
+		planner.solve(new Position(5, 5), new Position(5, 10));
+		assertFalse(planner.needUpdate());
+		
+		explorer.markWall(new Position(20, 20));
+		assertFalse(planner.needUpdate());
+		
+		explorer.markWall(new Position(5, 7));
+		assertTrue(planner.needUpdate());
+		assertEquals(7, planner.solve(new Position(5, 5), new Position(5, 10)).size());
+	}
+	
+	private static Position move(Position pos, Action action) {
+		int x = pos.getHorizontal();
+		int y = pos.getVertical();
+		
+		return new Position(
+				action==Action.GO_UP? y-1:
+				action==Action.GO_DOWN? y+1:y,
+				
+				action==Action.GO_LEFT? x-1:
+				action==Action.GO_RIGHT? x+1:x);
+	}
+}
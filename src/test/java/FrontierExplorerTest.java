@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.FrontierExplorer;
+import tws.keeper.solution.MazeExplorer;
+
+public class FrontierExplorerTest {
+	
+	@Test
+	public void everyCellShouldBeVisited() {
+		MazeExplorer map = new MazeExplorer(31, 31);
+		FrontierExplorer explorer = new FrontierExplorer(map);
+		Maze maze = Maze.builder().height(31).width(31).keys(0).seed(7).build(null);
+		Position pos = maze.getKeeperPosition();
+		Action action;
+		int steps = 0;
+		
+		do {
+			int y = pos.getVertical();
+			int x = pos.getHorizontal();
+			Position[] adjacent = {new Position(y-1, x), new Position(y+1, x), new Position(y, x-1), new Position(y, x+1)};
+			for(Position cell:adjacent) {
+				if(maze.getCell(cell.getVertical(), cell.getHorizontal()) == Cell.WALL)
+					map.markWall(cell);
+				else
+					explorer.seeOpen(cell);
+			}
+			explorer.visit(pos);
+			action = explorer.explore(pos);
+			
+			y += action==Action.GO_UP? -1 : action==Action.GO_DOWN? 1 : 0;
+			x += action==Action.GO_LEFT? -1 : action==Action.GO_RIGHT? 1 : 0;
+			pos = new Position(y, x);
+			assertNotEquals(Cell.WALL, maze.getCell(y, x));
+		}
+		while(action != Action.DO_NOTHING && ++steps < 31*31*4);
+		
+		for(int y=0;y<31;y++)
+			for(int x=0;x<31;x++)
+				if(maze.getCell(y, x) != Cell.WALL)
+					assertFalse(map.needObservation(new Position(y, x)));
+	}
+}
@@ -0,0 +1,43 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tws.keeper.model.Maze;
+import tws.keeper.springboot.GameEventStream;
+import tws.keeper.springboot.GameSession;
+import tws.keeper.springboot.SessionRegistry;
+
+public class GameEventStreamTest {
+	
+	@Test
+	public void removedSessionsShouldEndTheirStreams() throws InterruptedException {
+		SessionRegistry registry = new SessionRegistry(60000, 10);
+		GameEventStream events = new GameEventStream(10, 60000, 10000);
+		GameSession session = registry.create(Maze.builder().height(20).width(20).seed(1));
+		events.watch(session);
+		events.watch(session);
+		session.run(10);
+		assertEquals(2, events.getWatcherCount());
+		
+		registry.remove(session.getId());
+		assertTrue(session.isClosed());
+		for(int i=0;i<100 && events.getWatcherCount() > 0;i++)
+			Thread.sleep(10);
+		assertEquals(0, events.getWatcherCount());
+		events.shutdown();
+	}
+	
+	@Test(expected = GameEventStream.TooManyWatchersException.class)
+	public void watchersShouldNotExceedTheMaximum() {
+		GameEventStream events = new GameEventStream(2, 60000, 10000);
+		GameSession session = new SessionRegistry(60000, 10).getDefault();
+		try {
+			for(int i=0;i<3;i++)
+				events.watch(session);
+		}
+		finally {
+			events.shutdown();
+		}
+	}
+}
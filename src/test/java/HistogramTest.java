@@ -0,0 +1,46 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import tws.keeper.metrics.Histogram;
+
+public class HistogramTest {
+
+	@Test
+	public void percentilesShouldBeWithinTheRelativeError() {
+		Histogram histogram = new Histogram();
+		for(int value=1;value<=100_000;value++)
+			histogram.record(value);
+
+		assertEquals(100_000, histogram.getCount());
+		assertEquals(100_000, histogram.getMax());
+		assertEquals(50_000.5, histogram.getMean(), 1e-9);
+		for(double percentile:new double[] {1, 50, 90, 99, 99.9, 100}) {
+			long exact = (long)Math.ceil(percentile*1000);
+			long reported = histogram.getPercentile(percentile);
+			assertTrue(percentile + ": " + reported, reported >= exact && reported <= exact + exact/32);
+		}
+	}
+
+	@Test
+	public void smallAndHugeValuesShouldBeCounted() {
+		Histogram histogram = new Histogram();
+		Random random = new Random(1);
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		for(int i=0;i<1000;i++)
+			histogram.record(random.nextInt(32));
+
+		assertEquals(1002, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(0.01));
+		assertTrue(histogram.getPercentile(99) < 32);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+}
@@ -0,0 +1,29 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tws.keeper.metrics.KeeperMetrics;
+import tws.keeper.springboot.KeeperMeterBinder;
+
+public class KeeperMeterBinderTest {
+
+	@Test
+	public void metersShouldReadTheKeeperMetrics() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		new KeeperMeterBinder().bindTo(registry);
+		KeeperMetrics.reset();
+
+		KeeperMetrics.STEPS.add(3);
+		for(int i=1;i<=100;i++)
+			KeeperMetrics.PATH_LENGTH.record(i);
+
+		assertEquals(3, registry.get("keeper.steps").functionCounter().count(), 0);
+		assertEquals(100, registry.get("keeper.path.length.count").functionCounter().count(), 0);
+		assertEquals(5050, registry.get("keeper.path.length.total").functionCounter().count(), 0);
+		assertEquals(100, registry.get("keeper.path.length.max").gauge().value(), 0);
+		assertEquals(50, registry.get("keeper.path.length.percentile").tag("phi", "0.5").gauge().value(), 2);
+		KeeperMetrics.reset();
+	}
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.KeyRoutePlanner;
+import tws.keeper.solution.MazeExplorer;
+
+public class KeyRoutePlannerTest {
+	
+	private static int manhattan(Position a, Position b) {
+		return Math.abs(a.getVertical()-b.getVertical()) + Math.abs(a.getHorizontal()-b.getHorizontal());
+	}
+	
+	private static int length(Position start, List<Position> route) {
+		int length = 0;
+		for(Position stop:route) {
+			length += manhattan(start, stop);
+			start = stop;
+		}
+		return length;
+	}
+	
+	private static int shortest(Position start, List<Position> keys, boolean[] taken, Position door) {
+		int best = Integer.MAX_VALUE;
+		for(int i=0;i<keys.size();i++) {
+			if(taken[i])
+				continue;
+			taken[i] = true;
+			best = Math.min(best, manhattan(start, keys.get(i)) + shortest(keys.get(i), keys, taken, door));
+			taken[i] = false;
+		}
+		return best == Integer.MAX_VALUE? manhattan(start, door) : best;
+	}
+	
+	private static List<Position> randomCells(Random random, int count) {
+		List<Position> cells = new ArrayList<Position>();
+		for(int i=0;i<count;i++)
+			cells.add(new Position(1+random.nextInt(38), 1+random.nextInt(38)));
+		return cells;
+	}
+	
+	@Test
+	public void routeShouldBeOptimal() {
+		Random random = new Random(4);
+		for(int i=0;i<20;i++) {
+			//Unexplored cells can be visited, so distances are Manhattan distances
+			KeyRoutePlanner planner = new KeyRoutePlanner(new MazeExplorer());
+			List<Position> keys = randomCells(random, 7);
+			Position start = new Position(20, 20);
+			Position door = new Position(1, 1);
+			List<Position> route = planner.plan(start, keys, door);
+			
+			assertEquals(8, route.size());
+			assertTrue(route.containsAll(keys));
+			assertEquals(door, route.get(7));
+			assertEquals(shortest(start, keys, new boolean[7], door), length(start, route));
+		}
+	}
+	
+	@Test
+	public void pathShouldReachTheStop() throws UnsolvableProblemException {
+		KeyRoutePlanner planner = new KeyRoutePlanner(new MazeExplorer());
+		List<Position> keys = randomCells(new Random(9), 30);
+		Position start = new Position(20, 20);
+		List<Position> route = planner.plan(start, keys, new Position(1, 1));
+		
+		assertEquals(31, route.size());
+		Position target = route.get(0);
+		ArrayList<Action> path = planner.pathTo(start, target);
+		int y = start.getVertical();
+		int x = start.getHorizontal();
+		for(Action action:path) {
+			y += action==Action.GO_UP? -1 : action==Action.GO_DOWN? 1 : 0;
+			x += action==Action.GO_LEFT? -1 : action==Action.GO_RIGHT? 1 : 0;
+		}
+		
+		assertEquals(manhattan(start, target), path.size());
+		assertEquals(target, new Position(y, x));
+	}
+	
+	@Test
+	public void fieldsShouldOnlyBeStaleWhenTheirPathIsBlocked() throws UnsolvableProblemException {
+		MazeExplorer map = new MazeExplorer();
+		KeyRoutePlanner planner = new KeyRoutePlanner(map);
+		Position start = new Position(20, 20);
+		Position key = new Position(25, 30);
+		Position door = new Position(20, 10);
+		planner.plan(start, Arrays.asList(key), door);
+		
+		map.markWall(new Position(21, 20)); //Another shortest path goes around it
+		assertTrue(planner.canPathTo(key));
+		ArrayList<Action> path = planner.pathTo(start, key);
+		assertEquals(15, path.size());
+		assertEquals(Action.GO_RIGHT, path.get(0));
+		
+		map.markWall(new Position(20, 11)); //Every shortest path to the door goes through it
+		assertNull(planner.pathTo(start, door));
+		assertFalse(planner.canPathTo(door));
+		assertTrue(planner.canPathTo(key));
+	}
+}
@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import tws.keeper.model.Maze;
+import tws.keeper.springboot.MazeEncoding;
+
+public class MazeEncodingTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	private JsonNode write(Maze maze, MazeEncoding encoding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoding.write(maze, out);
+		return mapper.readTree(out.toByteArray());
+	}
+	
+	@Test
+	public void cellsShouldMatchToJson() throws IOException {
+		Maze maze = Maze.builder().height(25).width(31).seed(3).build(null);
+		
+		assertEquals(mapper.readTree(maze.toJson()), write(maze, MazeEncoding.CELLS));
+	}
+	
+	@Test
+	public void everyEncodingShouldHaveTheSameCells() throws IOException {
+		Maze maze = Maze.builder().height(25).width(31).seed(3).build(null);
+		JsonNode cells = write(maze, MazeEncoding.CELLS).get("cells");
+		JsonNode chars = write(maze, MazeEncoding.CHARS);
+		JsonNode rle = write(maze, MazeEncoding.RLE);
+		
+		for(int y=0;y<maze.getHeight();y++) {
+			String row = chars.get("rows").get(y).asText();
+			StringBuilder expanded = new StringBuilder();
+			int run = 0;
+			for(char c:rle.get("rows").get(y).asText().toCharArray()) {
+				if(Character.isDigit(c))
+					run = 10*run + c - '0';
+				else {
+					for(int i=0;i<Math.max(run, 1);i++)
+						expanded.append(c);
+					run = 0;
+				}
+			}
+			
+			assertEquals(row, expanded.toString());
+			for(int x=0;x<maze.getWidth();x++)
+				assertEquals(cells.get(y).get(x).asText(), chars.get("legend").get(String.valueOf(row.charAt(x))).asText());
+		}
+	}
+}
@@ -1,4 +1,5 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.EnumSet;
 import java.util.concurrent.ThreadLocalRandom;
@@ -6,6 +7,8 @@ import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Test;
 
 import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Maze;
 import tws.keeper.model.Position;
 import tws.keeper.solution.MazeExplorer;
 import tws.keeper.solution.MazeExplorer.CellState;
@@ -114,4 +117,34 @@ public class MazeExplorerTest {
 		Action action = explorer.explore(new Position(1,1));
 		assertEquals(action, Action.DO_NOTHING);
 	}
+	
+	@Test
+	public void offHeapMapShouldExploreLikeTheHeapOne() {
+		Maze maze = Maze.builder().height(31).width(31).seed(6).build(observable -> Action.DO_NOTHING);
+		MazeExplorer heap = new MazeExplorer(31, 31, false);
+		MazeExplorer offHeap = new MazeExplorer(31, 31, true);
+		assertTrue(offHeap.isOffHeap());
+		
+		Position pos = maze.getKeeperPosition();
+		Action action;
+		do {
+			int y = pos.getVertical();
+			int x = pos.getHorizontal();
+			for(Position next:new Position[] {new Position(y-1, x), new Position(y+1, x), new Position(y, x-1), new Position(y, x+1)}) {
+				if(maze.getCell(next.getVertical(), next.getHorizontal()) == Cell.WALL) {
+					heap.markWall(next);
+					offHeap.markWall(next);
+				}
+			}
+			action = heap.explore(pos);
+			assertEquals(action, offHeap.explore(pos));
+			pos = new Position(
+					action==Action.GO_UP? y-1: action==Action.GO_DOWN? y+1:y,
+					action==Action.GO_LEFT? x-1: action==Action.GO_RIGHT? x+1:x);
+		} while(action != Action.DO_NOTHING);
+		
+		for(int y=0;y<31;y++)
+			for(int x=0;x<31;x++)
+				assertEquals(heap.getCellStates(new Position(y, x)), offHeap.getCellStates(new Position(y, x)));
+	}
 }
@@ -0,0 +1,121 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Maze;
+import tws.keeper.solution.KeeperAI;
+
+public class MazeTest {
+	
+	@Test
+	public void builderShouldGenerateRequestedMaze() {
+		Maze maze = Maze.builder().height(120).width(75).keys(20).build(observable -> Action.DO_NOTHING);
+		
+		assertEquals(120, maze.getHeight());
+		assertEquals(75, maze.getWidth());
+		assertEquals(20, maze.getTotalNumberOfKeys());
+		assertEquals(20, maze.getKeysPositions().size());
+		assertFalse(maze.getKeysPositions().contains(maze.getDoorPosition()));
+		assertFalse(maze.getKeysPositions().contains(maze.getKeeperPosition()));
+		assertFalse(maze.getKeeperPosition().equals(maze.getDoorPosition()));
+	}
+	
+	@Test
+	public void keeperShouldNotStartEnclosed() {
+		for(int i=0;i<200;i++) {
+			Maze maze = Maze.builder().height(20).width(20).build(observable -> Action.DO_NOTHING);
+			boolean enclosed = maze.lookUp()==Cell.WALL && maze.lookDown()==Cell.WALL 
+					&& maze.lookLeft()==Cell.WALL && maze.lookRight()==Cell.WALL;
+			
+			assertFalse("Keeper enclosed at " + maze.getKeeperPosition(), enclosed);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void builderShouldRejectTooManyKeys() {
+		Maze.builder().height(5).width(5).keys(100).build(observable -> Action.DO_NOTHING);
+	}
+	
+	@Test
+	public void offHeapMazeShouldHaveTheSameLayout() {
+		Maze heap = Maze.builder().height(33).width(47).keys(9).seed(4).offHeap(false).build(observable -> Action.DO_NOTHING);
+		Maze offHeap = Maze.builder().height(33).width(47).keys(9).seed(4).offHeap(true).build(observable -> Action.DO_NOTHING);
+		
+		assertTrue(offHeap.isOffHeap());
+		assertFalse(heap.isOffHeap());
+		assertSameMaze(heap, offHeap);
+	}
+	
+	@Test
+	public void savedMazeShouldBePlayedWithoutChangingTheFile() throws IOException {
+		Path file = Files.createTempFile("maze", ".kmz");
+		try {
+			Maze maze = Maze.builder().height(41).width(41).keys(6).seed(2).build(observable -> Action.DO_NOTHING);
+			maze.save(file);
+			byte[] saved = Files.readAllBytes(file);
+			
+			Maze loaded = Maze.load(file, new KeeperAI(41, 41));
+			assertTrue(loaded.isOffHeap());
+			assertSameMaze(maze, loaded);
+			for(int i=0;i<41*41*8 && !loaded.isMazeCompleted();i++)
+				loaded.makeKeeperAct();
+			assertTrue(loaded.isMazeCompleted());
+			
+			assertArrayEquals(saved, Files.readAllBytes(file));
+			assertSameMaze(maze, Maze.load(file, observable -> Action.DO_NOTHING));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void filesWithPositionsOutOfTheMazeShouldBeRejected() throws IOException {
+		Path file = Files.createTempFile("maze", ".kmz");
+		try {
+			Maze.builder().height(21).width(21).keys(3).seed(5).build(observable -> Action.DO_NOTHING).save(file);
+			byte[] saved = Files.readAllBytes(file);
+			int[] offsets = {12, 16, 24, 32}; //keeper, door, first key, last key
+			int[] indexes = {-1, 0, 21*21}; //before the maze, a wall, after the maze
+			for(int offset : offsets) {
+				for(int index : indexes) {
+					byte[] corrupt = saved.clone();
+					ByteBuffer.wrap(corrupt).putInt(offset, index);
+					Files.write(file, corrupt);
+					try {
+						Maze.load(file, observable -> Action.DO_NOTHING);
+						fail("Loaded with " + index + " at " + offset);
+					}
+					catch(IOException e) {
+						assertTrue(e.getMessage().startsWith("Corrupt maze file"));
+					}
+				}
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+	
+	private static void assertSameMaze(Maze expected, Maze actual) {
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertEquals(expected.getWidth(), actual.getWidth());
+		for(int y=0;y<expected.getHeight();y++)
+			for(int x=0;x<expected.getWidth();x++)
+				assertEquals(expected.getCell(y, x), actual.getCell(y, x));
+		assertEquals(expected.getKeysPositions(), actual.getKeysPositions());
+		assertEquals(expected.getDoorPosition(), actual.getDoorPosition());
+		assertEquals(expected.getKeeperPosition(), actual.getKeeperPosition());
+	}
+}
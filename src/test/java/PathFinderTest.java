@@ -0,0 +1,154 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.solution.A_Star;
+import tws.keeper.solution.A_Star.UnsolvableProblemException;
+import tws.keeper.solution.HierarchicalA_Star;
+import tws.keeper.solution.IDA_Star;
+import tws.keeper.solution.KeeperAI;
+import tws.keeper.solution.Landmarks;
+import tws.keeper.solution.MazeExplorer;
+import tws.keeper.solution.MazeExplorer.CellState;
+import tws.keeper.solution.PathFinder;
+
+public class PathFinderTest {
+	private static final String[] OPTIMAL = {"d-star-lite", "a-star", "bidirectional-a-star", "corridors", "ida-star", "alt-a-star"};
+
+	@Test
+	public void optimalFindersShouldFindShortestPaths() throws UnsolvableProblemException {
+		for(String name:OPTIMAL)
+			checkPaths(PathFinder.named(name, 1), 40, 1, 0);
+		checkPaths(map -> new IDA_Star(map, 7), 16, 1, 0); //Table much smaller than the map
+		checkPaths(map -> new A_Star(map, 1, new Landmarks(map, 1)), 40, 1, 0);
+	}
+
+	@Test
+	public void weightedPathsShouldBeWithinTheBound() throws UnsolvableProblemException {
+		checkPaths(PathFinder.named("weighted-a-star", 2), 40, 2, 0);
+	}
+
+	@Test
+	public void hierarchicalPathsShouldBeCloseToTheShortest() throws UnsolvableProblemException {
+		checkPaths(PathFinder.named("hpa-star", 1), 40, 1.5, 16);
+		checkPaths(map -> new HierarchicalA_Star(map, 5), 36, 1.5, 10); //Clusters cut at the border
+	}
+
+	@Test
+	public void landmarksShouldExpandFewerCellsInMazes() throws UnsolvableProblemException {
+		int size = 61;
+		Maze maze = Maze.builder().height(size).width(size).keys(1).seed(5).build(map -> Action.DO_NOTHING);
+		MazeExplorer explorer = new MazeExplorer(size, size);
+		ArrayList<Position> free = new ArrayList<>();
+		for(int y=0;y<size;y++)
+			for(int x=0;x<size;x++)
+				if(maze.getCell(y, x) == Cell.WALL)
+					explorer.markWall(new Position(y, x));
+				else
+					free.add(new Position(y, x));
+
+		PathFinder manhattan = new A_Star(explorer);
+		PathFinder landmarks = new A_Star(explorer, 1, new Landmarks(explorer));
+		long manhattanExpanded = 0;
+		long landmarksExpanded = 0;
+		for(int i=0;i<50;i++) {
+			Position start = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+			Position target = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+			if(TestUtils.distance(explorer, start, target) < 0)
+				continue; //Pocket cut off from the rest
+			assertEquals(manhattan.solve(start, target).size(), landmarks.solve(start, target).size());
+			manhattanExpanded += manhattan.getExpanded();
+			landmarksExpanded += landmarks.getExpanded();
+		}
+		assertTrue(landmarksExpanded < manhattanExpanded);
+	}
+
+	@Test
+	public void onlyWallsInThePathShouldInvalidateIt() throws UnsolvableProblemException {
+		for(String name:OPTIMAL) {
+			MazeExplorer explorer = new MazeExplorer(7, 7);
+			PathFinder finder = PathFinder.named(name, 1).create(explorer);
+			assertEquals(4, finder.solve(new Position(1, 1), new Position(1, 5)).size());
+			assertTrue(name, !finder.needUpdate());
+
+			explorer.markWall(new Position(3, 3));
+			assertTrue(name, !finder.needUpdate());
+			explorer.markWall(new Position(1, 3));
+			assertTrue(name, finder.needUpdate());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void idaStarShouldRejectLargeMaps() {
+		new IDA_Star(new MazeExplorer(201, 200));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownFinderShouldBeRejected() {
+		PathFinder.named("dijkstra", 1);
+	}
+
+	@Test
+	public void keeperShouldCompleteTheMazeWithEveryFinder() {
+		for(String name:new String[] {"a-star", "weighted-a-star", "bidirectional-a-star", "corridors", "ida-star", "hpa-star", "alt-a-star"}) {
+			for(boolean cast:new boolean[] {false, true}) {
+				Maze maze = Maze.builder().height(31).width(31).keys(4).seed(3)
+						.build(new KeeperAI(31, 31, cast, PathFinder.named(name, 1.5)));
+				for(int i=0;i<31*31*8 && !maze.isMazeCompleted();i++)
+					maze.makeKeeperAct();
+				assertTrue(name, maze.isMazeCompleted());
+			}
+		}
+	}
+
+	/**
+	 * Paths found while the walls are marked, at most bound*distance + slack long.
+	 */
+	private static void checkPaths(PathFinder.Factory factory, int size, double bound, int slack) throws UnsolvableProblemException {
+		@SuppressWarnings("unchecked")
+		EnumSet<CellState>[][] maze = new EnumSet[size][size];
+		ArrayList<Position> free = TestUtils.generateRandomMap(maze);
+		MazeExplorer explorer = new MazeExplorer(size, size);
+		PathFinder finder = factory.create(explorer);
+		assertTrue(finder.needUpdate());
+
+		for(int y=0;y<maze.length;y+=4) {
+			for(int row=y;row<y+4;row++)
+				for(int x=0;x<maze[row].length;x++)
+					if(maze[row][x].contains(CellState.WALL))
+						explorer.markWall(new Position(row, x));
+
+			for(int i=0;i<10;i++) {
+				Position start = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+				Position target = free.get(ThreadLocalRandom.current().nextInt(free.size()));
+				ArrayList<Action> actions = finder.solve(start, target);
+				int distance = TestUtils.distance(explorer, start, target);
+
+				assertTrue(actions.size() >= distance && actions.size() <= bound*distance + slack);
+				assertEquals(target, walk(explorer, start, actions));
+				assertTrue(finder.getExpanded() >= 0 && finder.getPeakMemory() > 0 && finder.getOpenSetPeak() >= 0);
+			}
+		}
+	}
+
+	private static Position walk(MazeExplorer explorer, Position pos, ArrayList<Action> actions) {
+		for(Action action:actions) {
+			int x = pos.getHorizontal();
+			int y = pos.getVertical();
+			pos = new Position(
+					action==Action.GO_UP? y-1: action==Action.GO_DOWN? y+1:y,
+					action==Action.GO_LEFT? x-1: action==Action.GO_RIGHT? x+1:x);
+			assertTrue(explorer.canVisit(pos));
+		}
+		return pos;
+	}
+}
@@ -0,0 +1,37 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Maze;
+import tws.keeper.simulation.ActionLog;
+import tws.keeper.simulation.Replayer;
+import tws.keeper.solution.KeeperAI;
+
+public class ReplayerTest {
+	
+	@Test
+	public void sameSeedShouldGenerateSameMaze() {
+		Maze.Builder builder = Maze.builder().height(60).width(50).keys(9).seed(42);
+		Maze first = builder.build(observable -> Action.DO_NOTHING);
+		Maze second = builder.build(observable -> Action.DO_NOTHING);
+		
+		assertEquals(first.toJson(), second.toJson());
+		assertEquals(first.getKeysPositions(), second.getKeysPositions());
+		assertEquals(first.getDoorPosition(), second.getDoorPosition());
+		assertEquals(first.getKeeperPosition(), second.getKeeperPosition());
+		assertEquals(new Maze(null, 7).toJson(), new Maze(null, 7).toJson());
+	}
+	
+	@Test
+	public void replayShouldReachSameState() {
+		Maze.Builder builder = Maze.builder().seed(1234);
+		ActionLog log = Replayer.record(builder, new KeeperAI(), 100000);
+		Replayer.Result result = Replayer.replay(builder, ActionLog.parse(log.toString()));
+		
+		assertTrue(result.isCompleted());
+		assertEquals(log.size(), result.getSteps());
+		assertEquals(7, result.getKeysFound());
+	}
+}
@@ -0,0 +1,118 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import tws.keeper.model.Maze;
+import tws.keeper.springboot.GameSession;
+import tws.keeper.springboot.SessionNotFoundException;
+import tws.keeper.springboot.SessionRegistry;
+
+public class SessionRegistryTest {
+	
+	@Test
+	public void sessionsShouldBeIndependent() {
+		SessionRegistry registry = new SessionRegistry(60000, 10);
+		GameSession first = registry.create(Maze.builder().height(20).width(20).seed(1));
+		GameSession second = registry.create(Maze.builder().height(20).width(20).seed(1));
+		
+		for(int i=0;i<10;i++)
+			first.act();
+		
+		assertEquals(first, registry.get(first.getId()));
+		assertNotNull(registry.getDefault());
+		assertEquals(3, registry.getSessions().size());
+		assertEquals(second.statusJson(), registry.create(Maze.builder().height(20).width(20).seed(1)).statusJson());
+	}
+	
+	@Test
+	public void listenersShouldOnlyHearChanges() {
+		SessionRegistry registry = new SessionRegistry(60000, 10);
+		GameSession session = registry.create(Maze.builder().height(20).width(20).seed(2));
+		AtomicInteger changes = new AtomicInteger();
+		session.addChangeListener(changes::incrementAndGet);
+		
+		session.run(0);
+		assertEquals(0, changes.get());
+		session.run(50);
+		assertEquals(1, changes.get());
+		session.reset();
+		assertEquals(2, changes.get());
+		assertEquals(2, session.getGeneration());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void mazesWithTooManyCellsShouldBeRejected() {
+		SessionRegistry registry = new SessionRegistry(60000, 10, 100*100);
+		registry.create(Maze.builder().height(100).width(100));
+		registry.create(Maze.builder().height(32768).width(32768));
+	}
+	
+	@Test
+	public void concurrentCreatesShouldNotExceedTheMaximum() throws Exception {
+		SessionRegistry registry = new SessionRegistry(60000, 10);
+		AtomicInteger rejected = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> creators = new ArrayList<>();
+			for(int i=0;i<40;i++) {
+				creators.add(pool.submit(() -> {
+					try {
+						registry.create(Maze.builder().height(10).width(10));
+					}
+					catch(SessionRegistry.TooManySessionsException e) {
+						rejected.incrementAndGet();
+					}
+				}));
+			}
+			for(Future<?> creator:creators)
+				creator.get();
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		assertEquals(10, registry.getSessions().size());
+		assertEquals(31, rejected.get());
+		
+		GameSession session = registry.getSessions().stream().filter(s -> !s.equals(registry.getDefault())).findAny().get();
+		registry.remove(session.getId());
+		registry.create(Maze.builder().height(10).width(10)); //The slot is free again
+	}
+	
+	@Test
+	public void sessionsShouldNotExceedTheTotalCells() {
+		SessionRegistry registry = new SessionRegistry(60000, 100, 100*100, 40*40 + 2*100*100); //The default session is 40x40
+		registry.create(Maze.builder().height(100).width(100));
+		GameSession second = registry.create(Maze.builder().height(100).width(100));
+		try {
+			registry.create(Maze.builder().height(10).width(10));
+			fail("Too many cells");
+		}
+		catch(SessionRegistry.TooManySessionsException e) {
+		}
+		
+		registry.remove(second.getId());
+		registry.create(Maze.builder().height(100).width(100)); //Its cells are free again
+		assertEquals(3, registry.getSessions().size());
+	}
+	
+	@Test(expected = SessionNotFoundException.class)
+	public void idleSessionsShouldBeEvicted() throws InterruptedException {
+		SessionRegistry registry = new SessionRegistry(0, 10);
+		GameSession session = registry.create(Maze.builder());
+		Thread.sleep(5);
+		registry.evictIdle();
+		
+		assertNotNull(registry.getDefault());
+		registry.get(session.getId());
+	}
+}
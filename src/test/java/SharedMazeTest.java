@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import tws.keeper.model.Action;
+import tws.keeper.model.Cell;
+import tws.keeper.model.Keeper;
+import tws.keeper.model.Maze;
+import tws.keeper.model.Position;
+import tws.keeper.model.SharedMaze;
+import tws.keeper.simulation.TeamRunner;
+
+public class SharedMazeTest {
+	private static final Action[] MOVES = {Action.GO_UP, Action.GO_DOWN, Action.GO_LEFT, Action.GO_RIGHT};
+
+	@Test
+	public void everyKeyShouldBeTakenOnce() throws Exception {
+		List<Keeper> keepers = new ArrayList<>();
+		for(int i=0;i<8;i++) {
+			Random random = new Random(i);
+			keepers.add(maze -> MOVES[random.nextInt(4)]);
+		}
+		SharedMaze maze = Maze.builder().height(15).width(15).keys(10).seed(5).buildShared(keepers);
+		Maze single = Maze.builder().height(15).width(15).keys(10).seed(5).build(null);
+
+		ExecutorService pool = Executors.newFixedThreadPool(keepers.size());
+		try {
+			List<Future<?>> walks = new ArrayList<>();
+			for(SharedMaze.View view:maze.getViews()) {
+				walks.add(pool.submit(() -> {
+					for(int i=0;i<2_000_000 && !view.isMazeCompleted();i++)
+						view.makeKeeperAct();
+				}));
+			}
+			for(Future<?> walk:walks)
+				walk.get();
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		assertTrue(maze.isMazeCompleted());
+		assertEquals(10, maze.getKeysFound());
+		int taken = 0;
+		for(SharedMaze.View view:maze.getViews())
+			taken += view.getKeysTaken();
+		assertEquals(10, taken);
+		for(Position key:single.getKeysPositions()) {
+			assertNotEquals(-1, maze.getKeyOwner(key));
+			assertEquals(Cell.PATH, maze.getCell(key.getVertical(), key.getHorizontal()));
+		}
+		assertEquals(maze.getDoorPosition(), maze.getViews().get(maze.getFinisher()).getKeeperPosition());
+	}
+
+	@Test
+	public void teamShouldCompleteTheMaze() {
+		for(boolean shared:new boolean[] {true, false}) {
+			TeamRunner.Result result = new TeamRunner().size(41, 41).keys(8).seed(11).keepers(4).sharedMap(shared).run();
+			assertTrue(result.isCompleted());
+			assertTrue(result.getLongestSteps() <= result.getTotalSteps());
+		}
+	}
+
+	@Test
+	public void teamShouldTakeTheLastKeySeenAfterTheOthers() {
+		//In this maze the last key is first seen once the other 4 have been taken
+		for(int keepers=2;keepers<=4;keepers++) {
+			TeamRunner.Result result = new TeamRunner().size(21, 21).keys(5).seed(22).keepers(keepers)
+					.maxSteps(3000).inTurns(true).run();
+			assertTrue("Keepers: " + keepers, result.isCompleted());
+		}
+	}
+}
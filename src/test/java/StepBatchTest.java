@@ -0,0 +1,92 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import tws.keeper.model.Maze;
+import tws.keeper.springboot.GameSession;
+import tws.keeper.springboot.MazeEncoding;
+import tws.keeper.springboot.MazeRestApi;
+import tws.keeper.springboot.SessionRegistry;
+import tws.keeper.springboot.StepBatch;
+
+public class StepBatchTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final SessionRegistry registry = new SessionRegistry(60000, 10);
+
+	@Test
+	public void positionsShouldFollowTheActions() throws IOException {
+		GameSession session = registry.create(Maze.builder().height(31).width(31).seed(1));
+		JsonNode cells = mapper.readTree(session.mazeJson(MazeEncoding.CELLS)).get("cells");
+		JsonNode keeper = mapper.readTree(session.statusJson()).get("keeper");
+		int y = keeper.get("vertical").asInt();
+		int x = keeper.get("horizontal").asInt();
+
+		JsonNode batch = mapper.readTree(session.run(50).toJson());
+		assertEquals(0, batch.get("from").asInt());
+		assertEquals(50, batch.get("steps").asInt());
+		assertFalse(batch.get("complete").asBoolean());
+
+		String actions = batch.get("actions").asText();
+		JsonNode positions = batch.get("positions");
+		assertEquals(50, actions.length());
+		assertEquals(100, positions.size());
+		for(int i=0;i<actions.length();i++) {
+			char action = actions.charAt(i);
+			int nextY = y + (action=='U'? -1 : action=='D'? 1 : 0);
+			int nextX = x + (action=='L'? -1 : action=='R'? 1 : 0);
+			if(!"wall".equals(cells.get(nextY).get(nextX).asText())) {
+				y = nextY;
+				x = nextX;
+			}
+			assertEquals("Step " + i, y, positions.get(2*i).asInt());
+			assertEquals("Step " + i, x, positions.get(2*i + 1).asInt());
+		}
+	}
+
+	@Test
+	public void runShouldStopWhenTheMazeIsCompleted() throws IOException {
+		GameSession session = registry.create(Maze.builder().height(21).width(21).keys(2).seed(2));
+		StepBatch batch = session.run(1000000);
+		assertTrue(batch.isComplete());
+		assertTrue(batch.size() < 1000000);
+		assertEquals(true, mapper.readTree(batch.toJson()).get("complete").asBoolean());
+
+		StepBatch after = session.run(10);
+		assertEquals(0, after.size());
+		assertTrue(after.isComplete());
+	}
+
+	@Test
+	public void ndjsonShouldHaveALinePerStep() throws IOException {
+		GameSession session = registry.create(Maze.builder().height(31).width(31).seed(3));
+		session.run(5);
+		StepBatch batch = session.run(20);
+		JsonNode positions = mapper.readTree(batch.toJson()).get("positions");
+
+		String[] lines = batch.toNdjson().split("\n");
+		assertEquals(20, lines.length);
+		for(int i=0;i<lines.length;i++) {
+			JsonNode line = mapper.readTree(lines[i]);
+			assertEquals(6 + i, line.get("step").asInt());
+			assertEquals(positions.get(2*i).asInt(), line.get("keeper").get(0).asInt());
+			assertEquals(positions.get(2*i + 1).asInt(), line.get("keeper").get(1).asInt());
+		}
+	}
+
+	@Test
+	public void runsShouldBeCappedByTheLimit() throws IOException {
+		MazeRestApi api = new MazeRestApi(registry, null, null, 100);
+		String id = registry.create(Maze.builder().height(101).width(101).seed(4)).getId();
+
+		assertEquals(100, mapper.readTree(api.run(id, 0).getBody()).get("steps").asInt()); //Until completed, capped
+		assertEquals(100, mapper.readTree(api.run(id, 500).getBody()).get("steps").asInt());
+		assertEquals(7, mapper.readTree(api.run(id, 7).getBody()).get("steps").asInt());
+	}
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import tws.keeper.model.Position;
+import tws.keeper.solution.TeamMap;
+
+public class TeamMapTest {
+
+	@Test
+	public void cellsShouldBePublishedOnce() {
+		TeamMap team = new TeamMap(5, 5);
+		Position key = new Position(1, 2);
+
+		assertTrue(team.publish(key, TeamMap.KEY));
+		assertFalse(team.publish(key, TeamMap.OPEN)); //Taken, seen again
+		assertTrue(team.visit(key));
+		assertFalse(team.visit(key));
+		assertEquals(TeamMap.KEY | TeamMap.OPEN | TeamMap.VISITED, team.get(key));
+
+		TeamMap.Reader reader = team.reader();
+		assertTrue(reader.next());
+		assertEquals(key, reader.cell());
+		assertEquals(TeamMap.KEY | TeamMap.OPEN, reader.added());
+		assertTrue(reader.next());
+		assertEquals(TeamMap.VISITED, reader.added());
+		assertFalse(reader.next());
+	}
+
+	@Test
+	public void concurrentPublishersShouldLogEveryCellOnce() throws Exception {
+		int size = 101;
+		TeamMap team = new TeamMap(size, size);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> keepers = new ArrayList<>();
+			for(int k=0;k<8;k++) {
+				keepers.add(pool.submit(() -> {
+					for(int y=0;y<size;y++)
+						for(int x=0;x<size;x++) {
+							Position pos = new Position(y, x);
+							team.publish(pos, (x+y)%3==0? TeamMap.WALL : TeamMap.OPEN);
+							if((x+y)%3 != 0)
+								team.visit(pos);
+						}
+				}));
+			}
+			for(Future<?> keeper:keepers)
+				keeper.get();
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		int[] logged = new int[size*size];
+		TeamMap.Reader reader = team.reader();
+		while(reader.next()) {
+			Position pos = reader.cell();
+			int cell = pos.getVertical()*size + pos.getHorizontal();
+			assertEquals(0, logged[cell] & reader.added());
+			logged[cell] |= reader.added();
+		}
+		assertEquals(team.size(), reader.position());
+		for(int y=0;y<size;y++)
+			for(int x=0;x<size;x++) {
+				Position pos = new Position(y, x);
+				assertEquals(team.get(pos), logged[y*size + x]);
+				assertEquals((x+y)%3==0? TeamMap.WALL : TeamMap.OPEN | TeamMap.VISITED, team.get(pos));
+			}
+	}
+}
@@ -1,8 +1,11 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.concurrent.ThreadLocalRandom;
 
 import tws.keeper.model.Position;
+import tws.keeper.solution.MazeExplorer;
 import tws.keeper.solution.MazeExplorer.CellState;
 
 public class TestUtils {
@@ -63,4 +66,42 @@ public class TestUtils {
 		return path;
 	}
 
+	/**
+	 * Breadth first search distance between two positions of the map.
+	 * @return Number of steps, -1 if target can not be reached.
+	 */
+	public static int distance(MazeExplorer map, Position start, Position target) {
+		int width = map.getWidth();
+		int[] dist = new int[width*map.getHeight()];
+		Arrays.fill(dist, -1);
+		ArrayDeque<Position> queue = new ArrayDeque<Position>();
+		dist[start.getVertical()*width+start.getHorizontal()] = 0;
+		queue.add(start);
+		
+		while(!queue.isEmpty()) {
+			Position pos = queue.poll();
+			int d = dist[pos.getVertical()*width+pos.getHorizontal()];
+			if(pos.equals(target))
+				return d;
+			
+			int x = pos.getHorizontal();
+			int y = pos.getVertical();
+			Position neighbors[] = {
+					new Position(y-1, x),
+					new Position(y+1, x),
+					new Position(y, x-1),
+					new Position(y, x+1)
+			};
+			
+			for(Position next:neighbors) {
+				if(map.canVisit(next) && dist[next.getVertical()*width+next.getHorizontal()] < 0) {
+					dist[next.getVertical()*width+next.getHorizontal()] = d+1;
+					queue.add(next);
+				}
+			}
+		}
+		
+		return -1;
+	}
+
 }
@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tws.keeper.model.Maze;
+import tws.keeper.solution.KeeperAI;
+import tws.keeper.springboot.GameSession;
+import tws.keeper.springboot.SessionRegistry;
+import tws.keeper.springboot.WireFormat;
+
+public class WireFormatTest {
+	private int offset;
+	
+	private long varint(byte[] bytes) {
+		long value = 0;
+		for(int shift=0;;shift+=7) {
+			byte b = bytes[offset++];
+			value |= (long)(b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+	}
+	
+	@Test
+	public void packedCellsShouldMatchTheMaze() {
+		Maze maze = Maze.builder().height(23).width(37).seed(5).build(null);
+		byte[] packed = WireFormat.maze(maze);
+		
+		offset = 1;
+		assertEquals('M', packed[0]);
+		assertEquals(23, varint(packed));
+		assertEquals(37, varint(packed));
+		assertEquals(0, varint(packed));
+		assertEquals(offset + (23*37+3)/4, packed.length);
+		for(int index=0;index<23*37;index++)
+			assertEquals(maze.getCell(index/37, index%37).ordinal(), (packed[offset + index/4] >> 2*(index%4)) & 3);
+	}
+	
+	@Test
+	public void deltaShouldOnlyHaveNewKeys() {
+		Maze maze = Maze.builder().height(30).width(30).keys(5).seed(8).build(new KeeperAI(30, 30));
+		while(maze.getKeysFound() < 2)
+			maze.makeKeeperAct();
+		long since = maze.getKeyFoundStep(0);
+		byte[] delta = WireFormat.status(maze, 3, since);
+		
+		offset = 2;
+		assertEquals('S', delta[0]);
+		assertEquals(0, delta[1]);
+		assertEquals(3, varint(delta));
+		assertEquals(maze.getSteps(), varint(delta));
+		assertEquals(maze.getKeeperPosition().getVertical(), varint(delta));
+		assertEquals(maze.getKeeperPosition().getHorizontal(), varint(delta));
+		assertEquals(5, varint(delta));
+		assertEquals(2, varint(delta));
+		assertEquals(1, varint(delta));
+		assertEquals(maze.getKeysFoundPositions().get(1).getVertical(), varint(delta));
+		assertEquals(maze.getKeysFoundPositions().get(1).getHorizontal(), varint(delta));
+		assertEquals(delta.length, offset);
+	}
+	
+	@Test
+	public void deltaOfAnotherGenerationShouldBeAFullStatus() {
+		GameSession session = new SessionRegistry(60000, 10).create(Maze.builder().height(30).width(30).keys(5).seed(8));
+		session.run(20);
+		int generation = session.getGeneration();
+		assertEquals(0, session.statusBinary(10, generation)[1] & 2);
+		assertFalse(session.statusJson(10, generation).contains("\"door\""));
+		
+		session.reset();
+		session.run(5);
+		byte[] stale = session.statusBinary(10, generation);
+		assertEquals(2, stale[1] & 2);
+		offset = 2;
+		assertEquals(generation + 1, varint(stale));
+		assertTrue(session.statusJson(10, generation).contains("\"door\""));
+		assertTrue(session.statusJson(10, generation).contains("\"generation\":" + (generation + 1)));
+		assertEquals(2, session.statusBinary(3, generation)[1] & 2); //Still another maze, at a step it has reached
+		assertEquals(0, session.statusBinary(3, generation + 1)[1] & 2);
+	}
+}